@@ -0,0 +1,169 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * An immutable and serializable copy of a commit, detached from the
+ * {@link RevWalk} which produced it.
+ */
+public final class GitCommit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+    private final List<String> parentIds;
+    private final String authorName;
+    private final String authorEmail;
+    private final long authorTime;
+    private final String committerName;
+    private final String committerEmail;
+    private final long commitTime;
+    private final String message;
+    private final List<String> changedPaths;
+
+    private GitCommit(RevCommit commit, List<String> changedPaths) {
+        this.id = commit.getId().name();
+        List<String> parents = new ArrayList<String>(commit.getParentCount());
+        for (RevCommit parent : commit.getParents()) {
+            parents.add(parent.getId().name());
+        }
+        this.parentIds = Collections.unmodifiableList(parents);
+        PersonIdent author = commit.getAuthorIdent();
+        this.authorName = author.getName();
+        this.authorEmail = author.getEmailAddress();
+        this.authorTime = author.getWhen().getTime();
+        PersonIdent committer = commit.getCommitterIdent();
+        this.committerName = committer.getName();
+        this.committerEmail = committer.getEmailAddress();
+        this.commitTime = committer.getWhen().getTime();
+        this.message = commit.getFullMessage();
+        this.changedPaths = changedPaths == null ? null : Collections.unmodifiableList(changedPaths);
+    }
+
+    /**
+     * Copies a parsed commit, without the changed paths.
+     */
+    public static GitCommit valueOf(RevCommit commit) {
+        return new GitCommit(commit, null);
+    }
+
+    /**
+     * Copies a parsed commit together with the paths it changes compared to its
+     * first parent, parsing the parent with the given walk if needed.
+     */
+    public static GitCommit valueOf(RevCommit commit, RevWalk walk) throws IOException {
+        List<String> paths = new ArrayList<String>();
+        TreeWalk treeWalk = new TreeWalk(walk.getObjectReader());
+        try {
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            if (commit.getParentCount() > 0) {
+                treeWalk.addTree(walk.parseCommit(commit.getParent(0)).getTree());
+            } else {
+                treeWalk.addTree(new EmptyTreeIterator());
+            }
+            treeWalk.addTree(commit.getTree());
+            while (treeWalk.next()) {
+                paths.add(treeWalk.getPathString());
+            }
+        } finally {
+            treeWalk.close();
+        }
+        return new GitCommit(commit, paths);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public List<String> getParentIds() {
+        return parentIds;
+    }
+
+    public String getAuthorName() {
+        return authorName;
+    }
+
+    public String getAuthorEmail() {
+        return authorEmail;
+    }
+
+    public Date getAuthorTime() {
+        return new Date(authorTime);
+    }
+
+    public String getCommitterName() {
+        return committerName;
+    }
+
+    public String getCommitterEmail() {
+        return committerEmail;
+    }
+
+    public Date getCommitTime() {
+        return new Date(commitTime);
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * The first line of the message
+     */
+    public String getShortMessage() {
+        int end = message.indexOf('\n');
+        return end < 0 ? message : message.substring(0, end);
+    }
+
+    /**
+     * The paths changed compared to the first parent, or null if they were not
+     * collected
+     */
+    public List<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof GitCommit && id.equals(((GitCommit) obj).id);
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "commit " + id;
+    }
+}
@@ -16,20 +16,108 @@
  */
 package org.apache.camel.component.git;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.camel.Endpoint;
 import org.apache.camel.impl.DefaultComponent;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
 
 /**
  * Represents the component that manages {@link GitEndpoint}.
  */
 public class GitComponent extends DefaultComponent {
 
+    // the stream file threshold installed in JGit by any git component, and
+    // the number of started components relying on it
+    private static int installedStreamFileThreshold;
+    private static int streamFileThresholdUsers;
+
+    private final Map<String, GitInMemoryRepository> inMemoryRepositories = new HashMap<String, GitInMemoryRepository>();
+
+    private int streamFileThreshold;
+
+    private boolean streamFileThresholdInstalled;
+
     protected Endpoint createEndpoint(String uri, String remaining, Map<String, Object> parameters) throws Exception {
         GitEndpoint endpoint = new GitEndpoint(uri, this);
         setProperties(endpoint, parameters);
         endpoint.setLocalPath(remaining);
         return endpoint;
     }
+
+    /**
+     * The in memory repository of the given local path, created on first use
+     * and kept until the component stops.
+     */
+    public synchronized GitInMemoryRepository getInMemoryRepository(String localPath) throws IOException {
+        GitInMemoryRepository repository = inMemoryRepositories.get(localPath);
+        if (repository == null) {
+            repository = new GitInMemoryRepository(localPath);
+            inMemoryRepositories.put(localPath, repository);
+        }
+        return repository;
+    }
+
+    /**
+     * Objects larger than this many bytes are read as streams from the object
+     * database instead of being inflated in memory, 0 keeps the JGit default of
+     * 50 MiB.
+     * <p/>
+     * This option is JVM wide, as JGit holds a single window cache
+     * configuration for the whole JVM: setting it replaces any configuration
+     * installed by the application, the other settings falling back to the
+     * JGit defaults, until the last component setting it stops, which restores
+     * the JGit defaults. While it is set, a component asking for a different
+     * value fails to start.
+     */
+    public int getStreamFileThreshold() {
+        return streamFileThreshold;
+    }
+
+    public void setStreamFileThreshold(int streamFileThreshold) {
+        this.streamFileThreshold = streamFileThreshold;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        if (streamFileThreshold > 0) {
+            installStreamFileThreshold(streamFileThreshold);
+            streamFileThresholdInstalled = true;
+        }
+    }
+
+    private static synchronized void installStreamFileThreshold(int threshold) {
+        if (installedStreamFileThreshold != threshold) {
+            if (installedStreamFileThreshold > 0) {
+                throw new IllegalStateException("The stream file threshold is already set to " + installedStreamFileThreshold + " for the whole JVM, cannot set it to " + threshold);
+            }
+            WindowCacheConfig config = new WindowCacheConfig();
+            config.setStreamFileThreshold(threshold);
+            config.install();
+            installedStreamFileThreshold = threshold;
+        }
+        streamFileThresholdUsers++;
+    }
+
+    private static synchronized void uninstallStreamFileThreshold() {
+        if (--streamFileThresholdUsers == 0) {
+            new WindowCacheConfig().install();
+            installedStreamFileThreshold = 0;
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        synchronized (this) {
+            inMemoryRepositories.clear();
+        }
+        if (streamFileThresholdInstalled) {
+            uninstallStreamFileThreshold();
+            streamFileThresholdInstalled = false;
+        }
+    }
 }
@@ -22,4 +22,38 @@ public interface GitConstants {
     String GIT_FILE_NAME = "CamelGitFilename";
 
     String GIT_COMMIT_MESSAGE = "CamelGitCommitMessage";
+
+    String GIT_REVISION = "CamelGitRevision";
+
+    String GIT_ARCHIVE_FORMAT = "CamelGitArchiveFormat";
+
+    String GIT_ARCHIVE_PREFIX = "CamelGitArchivePrefix";
+
+    String GIT_OLD_REVISION = "CamelGitOldRevision";
+
+    String GIT_DIFF_CONTEXT_LINES = "CamelGitDiffContextLines";
+
+    String GIT_DIFF_RENAME_LIMIT = "CamelGitDiffRenameLimit";
+
+    String GIT_DIFF_SUMMARY = "CamelGitDiffSummary";
+
+    String GIT_REF_NAME = "CamelGitRefName";
+
+    String GIT_REF_EVENT = "CamelGitRefEvent";
+
+    String GIT_OLD_OBJECT_ID = "CamelGitOldObjectId";
+
+    String GIT_NEW_OBJECT_ID = "CamelGitNewObjectId";
+
+    String GIT_UPDATE_TYPE = "CamelGitUpdateType";
+
+    String GIT_TYPE = "CamelGitType";
+
+    String GIT_PUSH_REF_SPECS = "CamelGitPushRefSpecs";
+
+    String GIT_PUSH_TAGS = "CamelGitPushTags";
+
+    String GIT_REMOTES = "CamelGitRemotes";
+
+    String GIT_BATCH = "CamelGitBatch";
 }
@@ -16,11 +16,15 @@
  */
 package org.apache.camel.component.git;
 
+import java.io.IOException;
+import java.util.Map;
+
 import org.apache.camel.Consumer;
 import org.apache.camel.Processor;
 import org.apache.camel.Producer;
 import org.apache.camel.component.git.consumer.GitBranchConsumer;
 import org.apache.camel.component.git.consumer.GitCommitConsumer;
+import org.apache.camel.component.git.consumer.GitRefConsumer;
 import org.apache.camel.component.git.consumer.GitTagConsumer;
 import org.apache.camel.component.git.consumer.GitType;
 import org.apache.camel.component.git.producer.GitProducer;
@@ -29,10 +33,21 @@ import org.apache.camel.spi.Metadata;
 import org.apache.camel.spi.UriEndpoint;
 import org.apache.camel.spi.UriParam;
 import org.apache.camel.spi.UriPath;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @UriEndpoint(scheme = "git", title = "Git", syntax = "git://localpath", label = "api,file")
 public class GitEndpoint extends DefaultEndpoint {
 
+    private static final Logger LOG = LoggerFactory.getLogger(GitEndpoint.class);
+
     @UriPath
     @Metadata(required = "true")
     private String localPath;
@@ -46,6 +61,24 @@ public class GitEndpoint extends DefaultEndpoint {
     @UriPath(label = "consumer")
     private GitType type;
 
+    @UriParam(label = "consumer")
+    private boolean remoteBranches;
+
+    @UriParam(label = "consumer")
+    private String startFrom;
+
+    @UriParam(label = "consumer")
+    private boolean fetchRemote;
+
+    @UriParam(label = "consumer")
+    private String includePaths;
+
+    @UriParam(label = "consumer")
+    private String excludePaths;
+
+    @UriParam(label = "consumer", defaultValue = "1")
+    private int threads = 1;
+
     @UriParam
     private String username;
 
@@ -55,9 +88,57 @@ public class GitEndpoint extends DefaultEndpoint {
     @UriParam
     private String remotePath;
 
+    @UriParam
+    private boolean compactCommits;
+
+    @UriParam
+    private boolean compactCommitPaths;
+
+    @UriParam
+    private boolean warmUp;
+
+    @UriParam
+    private boolean inMemory;
+
+    @UriParam
+    private int bigFileThreshold;
+
     @UriParam(label = "producer")
     private String operation;
 
+    @UriParam(label = "producer", defaultValue = "100")
+    private int blameCacheSize = 100;
+
+    @UriParam(label = "producer")
+    private int logCacheSize;
+
+    @UriParam(label = "producer")
+    private long logCacheTtl;
+
+    @UriParam(label = "producer", defaultValue = "true")
+    private boolean statusUntracked = true;
+
+    @UriParam(label = "producer")
+    private boolean statusIncremental;
+
+    @UriParam(label = "producer", defaultValue = "true")
+    private boolean writeWorkTree = true;
+
+    @UriParam(label = "producer")
+    private long pushCoalesceWindow;
+
+    @UriParam(label = "producer", defaultValue = "4")
+    private int fetchParallelism = 4;
+
+    @UriParam(label = "producer", defaultValue = "copy", enums = "copy,shared,hardlink")
+    private String cloneMode = "copy";
+
+    @UriParam(label = "producer", defaultValue = "recursive")
+    private String mergeStrategy = "recursive";
+
+    @UriParam(label = "producer", defaultValue = "60000")
+    private long pipeTimeout = 60000;
+
     public GitEndpoint(String uri, GitComponent component) {
         super(uri, component);
     }
@@ -75,11 +156,37 @@ public class GitEndpoint extends DefaultEndpoint {
             return new GitTagConsumer(this, processor);
         } else if (type == GitType.BRANCH) {
             return new GitBranchConsumer(this, processor);
+        } else if (type == GitType.REF) {
+            return new GitRefConsumer(this, processor);
         } else {
             throw new IllegalArgumentException("Cannot create producer with type " + type);
         }
     }
 
+    /**
+     * Loads the refs, the pack indexes and the commits at the branch tips of the
+     * repository, so the first exchange does not pay for it.
+     */
+    public void warmUp(Repository repository) throws IOException {
+        long start = System.currentTimeMillis();
+        Map<String, Ref> refs = repository.getRefDatabase().getRefs(RefDatabase.ALL);
+        ObjectReader reader = repository.newObjectReader();
+        RevWalk walk = new RevWalk(reader);
+        try {
+            // looking up a missing object searches, and so loads the index of, every pack
+            reader.has(ObjectId.zeroId());
+            for (Ref ref : refs.values()) {
+                if (ref.getObjectId() != null && ref.getName().startsWith(Constants.R_HEADS)) {
+                    walk.parseAny(ref.getObjectId());
+                }
+            }
+        } finally {
+            walk.close();
+            reader.close();
+        }
+        LOG.info("Warmed up the repository {} in {} ms, {} refs", new Object[] {localPath, System.currentTimeMillis() - start, refs.size()});
+    }
+
     @Override
     public boolean isSingleton() {
         return false;
@@ -96,6 +203,77 @@ public class GitEndpoint extends DefaultEndpoint {
         this.remotePath = remotePath;
     }
 
+    /**
+     * Whether the commit consumers and the log operation report commits as
+     * serializable {@link GitCommit} values instead of {@link org.eclipse.jgit.revwalk.RevCommit}
+     */
+    public boolean isCompactCommits() {
+        return compactCommits;
+    }
+
+    public void setCompactCommits(boolean compactCommits) {
+        this.compactCommits = compactCommits;
+    }
+
+    /**
+     * Whether the {@link GitCommit} values also carry the paths changed by each
+     * commit, compared to its first parent
+     */
+    public boolean isCompactCommitPaths() {
+        return compactCommitPaths;
+    }
+
+    public void setCompactCommitPaths(boolean compactCommitPaths) {
+        this.compactCommitPaths = compactCommitPaths;
+    }
+
+    /**
+     * Whether the refs and pack indexes of the repository are loaded when the
+     * producer or consumer opens it, logging the time taken
+     */
+    public boolean isWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(boolean warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Whether the repository is held in memory instead of on disk. The
+     * endpoints with the same local path share it until the component stops.
+     * It has no working tree: files are staged with the write and remove
+     * operations, and the operations needing a working tree are not supported
+     */
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    /**
+     * Files larger than this many bytes are never delta compressed in the packs
+     * the producer sends, as on push, so they are streamed instead of loaded in
+     * memory. 0 keeps the <tt>core.bigFileThreshold</tt> of the repository
+     * configuration, which is never changed.
+     */
+    public int getBigFileThreshold() {
+        return bigFileThreshold;
+    }
+
+    public void setBigFileThreshold(int bigFileThreshold) {
+        this.bigFileThreshold = bigFileThreshold;
+    }
+
+    /**
+     * The in memory repository of this endpoint's local path
+     */
+    public GitInMemoryRepository getInMemoryRepository() throws IOException {
+        return ((GitComponent) getComponent()).getInMemoryRepository(localPath);
+    }
+
     /**
      * The branch name to work on
      */
@@ -151,6 +329,142 @@ public class GitEndpoint extends DefaultEndpoint {
         this.operation = operation;
     }
 
+    /**
+     * The maximum number of blame results to keep in memory, keyed by commit
+     * and path. Use 0 to disable the cache
+     */
+    public int getBlameCacheSize() {
+        return blameCacheSize;
+    }
+
+    public void setBlameCacheSize(int blameCacheSize) {
+        this.blameCacheSize = blameCacheSize;
+    }
+
+    /**
+     * The maximum number of log results to keep in memory, keyed by the commit
+     * the log starts from, so a result stays valid until the branch moves. Use
+     * 0, the default, to disable the cache
+     */
+    public int getLogCacheSize() {
+        return logCacheSize;
+    }
+
+    public void setLogCacheSize(int logCacheSize) {
+        this.logCacheSize = logCacheSize;
+    }
+
+    /**
+     * Time in millis after which a cached log result is computed again. Use 0,
+     * the default, to keep it as long as it is in the cache
+     */
+    public long getLogCacheTtl() {
+        return logCacheTtl;
+    }
+
+    public void setLogCacheTtl(long logCacheTtl) {
+        this.logCacheTtl = logCacheTtl;
+    }
+
+    /**
+     * Whether the status operation scans the working tree for untracked files
+     */
+    public boolean isStatusUntracked() {
+        return statusUntracked;
+    }
+
+    public void setStatusUntracked(boolean statusUntracked) {
+        this.statusUntracked = statusUntracked;
+    }
+
+    /**
+     * Whether the status operation keeps its last result and watches the working
+     * tree, re-examining only the changed paths on the next call
+     */
+    public boolean isStatusIncremental() {
+        return statusIncremental;
+    }
+
+    public void setStatusIncremental(boolean statusIncremental) {
+        this.statusIncremental = statusIncremental;
+    }
+
+    /**
+     * Whether the write operation also writes the content to the working tree,
+     * or only stores it in the object database and the index
+     */
+    public boolean isWriteWorkTree() {
+        return writeWorkTree;
+    }
+
+    public void setWriteWorkTree(boolean writeWorkTree) {
+        this.writeWorkTree = writeWorkTree;
+    }
+
+    /**
+     * Time in millis during which the push requests for the same remote and
+     * branch are collapsed into a single push, whose result is returned to all
+     * of them. Zero, the default, pushes once per exchange
+     */
+    public long getPushCoalesceWindow() {
+        return pushCoalesceWindow;
+    }
+
+    public void setPushCoalesceWindow(long pushCoalesceWindow) {
+        this.pushCoalesceWindow = pushCoalesceWindow;
+    }
+
+    /**
+     * The maximum number of remotes the fetch operation fetches at the same
+     * time
+     */
+    public int getFetchParallelism() {
+        return fetchParallelism;
+    }
+
+    public void setFetchParallelism(int fetchParallelism) {
+        this.fetchParallelism = fetchParallelism;
+    }
+
+    /**
+     * How the clone operation copies a repository of the local file system:
+     * <tt>copy</tt> fetches all its objects, <tt>shared</tt> reads them from the
+     * source repository through an alternates entry and <tt>hardlink</tt> hard
+     * links its object files. Remote repositories are always fetched
+     */
+    public String getCloneMode() {
+        return cloneMode;
+    }
+
+    public void setCloneMode(String cloneMode) {
+        this.cloneMode = cloneMode;
+    }
+
+    /**
+     * The name of the JGit merge strategy used by the merge operation, such as
+     * <tt>recursive</tt> or <tt>resolve</tt>
+     */
+    public String getMergeStrategy() {
+        return mergeStrategy;
+    }
+
+    public void setMergeStrategy(String mergeStrategy) {
+        this.mergeStrategy = mergeStrategy;
+    }
+
+    /**
+     * Time in millis the archive and diff operations wait for their streamed
+     * body to be read before they fail and release the repository. Zero waits
+     * forever
+     */
+    public long getPipeTimeout() {
+        return pipeTimeout;
+    }
+
+    public void setPipeTimeout(long pipeTimeout) {
+        this.pipeTimeout = pipeTimeout;
+    }
+
     /**
      * The consumer type
      */
@@ -162,6 +476,82 @@ public class GitEndpoint extends DefaultEndpoint {
         this.type = type;
     }
 
+    /**
+     * Whether the branch consumer also reports remote-tracking branches
+     */
+    public boolean isRemoteBranches() {
+        return remoteBranches;
+    }
+
+    public void setRemoteBranches(boolean remoteBranches) {
+        this.remoteBranches = remoteBranches;
+    }
+
+    /**
+     * Where a new commit consumer starts: <tt>now</tt> to report only commits
+     * made after the first poll, a date (<tt>yyyy-MM-dd</tt> or
+     * <tt>yyyy-MM-dd'T'HH:mm:ss</tt>) to report only commits made after it, or a
+     * commit-ish to report only commits not reachable from it. By default the
+     * whole history is reported
+     */
+    public String getStartFrom() {
+        return startFrom;
+    }
+
+    public void setStartFrom(String startFrom) {
+        this.startFrom = startFrom;
+    }
+
+    /**
+     * Whether the consumer fetches from the remote path before polling. The
+     * refs advertised by the remote are compared with the previous poll first,
+     * and the fetch is skipped when none of them changed
+     */
+    public boolean isFetchRemote() {
+        return fetchRemote;
+    }
+
+    public void setFetchRemote(boolean fetchRemote) {
+        this.fetchRemote = fetchRemote;
+    }
+
+    /**
+     * Comma separated paths; the commit consumer only reports commits changing
+     * something under them. A trailing <tt>/**</tt> is allowed
+     */
+    public String getIncludePaths() {
+        return includePaths;
+    }
+
+    public void setIncludePaths(String includePaths) {
+        this.includePaths = includePaths;
+    }
+
+    /**
+     * Comma separated paths; the commit consumer skips commits changing nothing
+     * but them. A trailing <tt>/**</tt> is allowed
+     */
+    public String getExcludePaths() {
+        return excludePaths;
+    }
+
+    public void setExcludePaths(String excludePaths) {
+        this.excludePaths = excludePaths;
+    }
+
+    /**
+     * The number of threads the commit consumer uses to process the commits of
+     * different branches in parallel. The commits of a branch are always
+     * processed in order
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
     /**
      * The tag name to work on
      */
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * A repository held in memory, shared by the endpoints of the same local path.
+ * <p/>
+ * It has no working tree, so it keeps its own staging area: the write and
+ * remove operations edit it and the commit operation turns it into a commit
+ * on top of HEAD.
+ */
+public class GitInMemoryRepository {
+
+    private final InMemoryRepository repository;
+
+    private DirCache index;
+
+    private ObjectId base;
+
+    public GitInMemoryRepository(String name) throws IOException {
+        this.repository = new InMemoryRepository(new DfsRepositoryDescription(name));
+        repository.updateRef(Constants.HEAD).link(Constants.R_HEADS + Constants.MASTER);
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Points the staged entry of the path to the given blob.
+     */
+    public synchronized void stage(String path, final ObjectId blobId, final long length) throws IOException {
+        DirCacheEditor editor = getIndex().editor();
+        editor.add(new DirCacheEditor.PathEdit(path) {
+            @Override
+            public void apply(DirCacheEntry entry) {
+                if (!FileMode.EXECUTABLE_FILE.equals(entry.getFileMode())) {
+                    entry.setFileMode(FileMode.REGULAR_FILE);
+                }
+                entry.setObjectId(blobId);
+                entry.setLength(length);
+            }
+        });
+        editor.finish();
+    }
+
+    /**
+     * Removes the given files, or directories with everything below them, from
+     * the staging area.
+     */
+    public synchronized void unstage(Collection<String> paths) throws IOException {
+        DirCacheEditor editor = getIndex().editor();
+        for (String path : paths) {
+            editor.add(new DirCacheEditor.DeletePath(path));
+            editor.add(new DirCacheEditor.DeleteTree(path));
+        }
+        editor.finish();
+    }
+
+    /**
+     * Commits the staging area on top of the HEAD it was read from. Fails if
+     * HEAD moved since, rather than reverting the commits made in between; the
+     * staged changes are then dropped and the next operation starts over from
+     * the new HEAD.
+     */
+    public synchronized RevCommit commit(String message, PersonIdent ident) throws IOException {
+        DirCache staged = getIndex();
+        ObjectInserter inserter = repository.newObjectInserter();
+        RevWalk walk = new RevWalk(repository);
+        try {
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(staged.writeTree(inserter));
+            if (base != null) {
+                commit.setParentId(base);
+            }
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            RevCommit result = walk.parseCommit(commitId);
+            RefUpdate update = repository.updateRef(Constants.HEAD);
+            update.setNewObjectId(commitId);
+            update.setExpectedOldObjectId(base != null ? base : ObjectId.zeroId());
+            update.setRefLogMessage("commit: " + result.getShortMessage(), false);
+            RefUpdate.Result updated = update.update(walk);
+            if (updated != RefUpdate.Result.NEW && updated != RefUpdate.Result.FAST_FORWARD) {
+                index = null;
+                throw new IOException("Cannot update HEAD of the in memory repository " + repository.getDescription().getRepositoryName() + ": " + updated);
+            }
+            index = null;
+            return result;
+        } finally {
+            walk.close();
+            inserter.close();
+        }
+    }
+
+    /**
+     * The staging area, read from the tree of HEAD the first time it is used
+     * after a commit.
+     */
+    private DirCache getIndex() throws IOException {
+        if (index == null) {
+            DirCache dirCache = DirCache.newInCore();
+            base = repository.resolve(Constants.HEAD);
+            if (base != null) {
+                ObjectReader reader = repository.newObjectReader();
+                RevWalk walk = new RevWalk(reader);
+                try {
+                    DirCacheBuilder builder = dirCache.builder();
+                    builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, walk.parseCommit(base).getTree());
+                    builder.finish();
+                } finally {
+                    walk.close();
+                    reader.close();
+                }
+            }
+            index = dirCache;
+        }
+        return index;
+    }
+}
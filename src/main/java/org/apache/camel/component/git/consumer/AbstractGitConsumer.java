@@ -18,13 +18,37 @@ package org.apache.camel.component.git.consumer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
+import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
+import org.apache.camel.component.git.GitCommit;
+import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitEndpoint;
 import org.apache.camel.impl.ScheduledPollConsumer;
+import org.apache.camel.util.ObjectHelper;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.CredentialsProvider;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +62,8 @@ public abstract class AbstractGitConsumer extends ScheduledPollConsumer {
 
     private Git git;
 
+    private Map<String, ObjectId> advertisedRefs;
+
     public AbstractGitConsumer(GitEndpoint endpoint, Processor processor) {
         super(endpoint, processor);
         this.endpoint = endpoint;
@@ -46,15 +72,68 @@ public abstract class AbstractGitConsumer extends ScheduledPollConsumer {
     @Override
     protected void doStart() throws Exception {
         super.doStart();
-        this.repo = getLocalRepository();
+        if (endpoint.isInMemory()) {
+            this.repo = endpoint.getInMemoryRepository().getRepository();
+        } else {
+            this.repo = getLocalRepository();
+        }
+        if (endpoint.isWarmUp()) {
+            endpoint.warmUp(repo);
+        }
         this.git = new Git(repo);
     }
 
     @Override
     protected void doStop() throws Exception {
         super.doStop();
-        repo.close();
-        git.close();
+        // an in memory repository is shared, the component releases it
+        if (!endpoint.isInMemory()) {
+            repo.close();
+            git.close();
+        }
+    }
+
+    /**
+     * Fetches from the remote path if the consumer is configured to, but only
+     * when the refs advertised by the remote changed since the last fetch.
+     * Returns true if a fetch was done.
+     */
+    protected boolean fetchRemoteChanges() throws Exception {
+        if (!endpoint.isFetchRemote()) {
+            return false;
+        }
+        if (ObjectHelper.isEmpty(endpoint.getRemotePath())) {
+            throw new IllegalArgumentException("Remote path must be specified to fetch from the remote repository");
+        }
+        CredentialsProvider credentials = null;
+        if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
+            credentials = new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword());
+        }
+        Map<String, ObjectId> advertised = new HashMap<String, ObjectId>();
+        for (Ref ref : git.lsRemote().setRemote(endpoint.getRemotePath()).setCredentialsProvider(credentials).call()) {
+            advertised.put(ref.getName(), ref.getObjectId());
+        }
+        if (advertised.equals(advertisedRefs)) {
+            return false;
+        }
+        FetchCommand fetch = git.fetch().setRemote(endpoint.getRemotePath()).setCredentialsProvider(credentials);
+        if (!repo.getConfig().getSubsections(ConfigConstants.CONFIG_REMOTE_SECTION).contains(endpoint.getRemotePath())) {
+            // a plain URL has no configured refspecs, so its branches are tracked in
+            // a namespace of the consumer, leaving the refs of real remotes alone
+            fetch.setRefSpecs(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + getTrackingName(endpoint.getRemotePath()) + "/*"));
+        }
+        fetch.call();
+        LOG.debug("Fetched changes from {}", endpoint.getRemotePath());
+        advertisedRefs = advertised;
+        return true;
+    }
+
+    /**
+     * The name under refs/remotes where the branches of a remote URL are
+     * tracked, the same for every consumer of that URL.
+     */
+    static String getTrackingName(String remotePath) {
+        return "camel-" + Integer.toHexString(remotePath.hashCode());
     }
 
     private Repository getLocalRepository() throws IOException {
@@ -71,6 +150,122 @@ public abstract class AbstractGitConsumer extends ScheduledPollConsumer {
         return repo;
     }
 
+    /**
+     * Reads the refs under the given prefixes with a single scan of the ref
+     * database, keyed and sorted by name. Symbolic refs are skipped and tags
+     * are peeled, so annotated tags expose the tagged object.
+     */
+    protected SortedMap<String, Ref> getRefSnapshot(String... prefixes) throws IOException {
+        String scanPrefix = prefixes.length == 1 ? prefixes[0] : Constants.R_REFS;
+        SortedMap<String, Ref> snapshot = new TreeMap<String, Ref>();
+        for (Ref ref : repo.getRefDatabase().getRefs(scanPrefix).values()) {
+            if (ref.isSymbolic() || ref.getObjectId() == null || !startsWithAny(ref.getName(), prefixes)) {
+                continue;
+            }
+            if (ref.getName().startsWith(Constants.R_TAGS)) {
+                ref = repo.getRefDatabase().peel(ref);
+            }
+            snapshot.put(ref.getName(), ref);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Classifies an updated ref as a fast-forward or a forced update.
+     */
+    protected RefUpdate.Result getUpdateType(RevWalk walk, GitRefChange change) throws IOException {
+        try {
+            if (walk.isMergedInto(walk.parseCommit(change.getOldId()), walk.parseCommit(change.getNewId()))) {
+                return RefUpdate.Result.FAST_FORWARD;
+            }
+        } catch (MissingObjectException e) {
+            // the old tip is gone, which only happens when it was rewritten
+        } catch (IncorrectObjectTypeException e) {
+            // not a commit, there is no history to compare
+        } finally {
+            walk.reset();
+        }
+        return RefUpdate.Result.FORCED;
+    }
+
+    /**
+     * Prepares a walk over the commits reachable from the created or moved refs
+     * and from none of the previous tips, returning false if there is nothing to
+     * walk.
+     */
+    protected boolean markNewCommits(RevWalk walk, List<GitRefChange> changes, Collection<Ref> previous) throws IOException {
+        boolean started = false;
+        for (GitRefChange change : changes) {
+            RevCommit commit = parseCommit(walk, change.getNewId());
+            if (commit != null) {
+                walk.markStart(commit);
+                started = true;
+            }
+        }
+        if (started) {
+            for (Ref ref : previous) {
+                RevCommit commit = parseCommit(walk, GitRefChange.objectId(ref));
+                if (commit != null) {
+                    walk.markUninteresting(commit);
+                }
+            }
+        }
+        return started;
+    }
+
+    /**
+     * Parses the commit with the given id, or returns null if it is missing or
+     * not a commit.
+     */
+    protected static RevCommit parseCommit(RevWalk walk, ObjectId id) throws IOException {
+        if (id == null) {
+            return null;
+        }
+        try {
+            RevObject object = walk.parseAny(id);
+            return object instanceof RevCommit ? (RevCommit) object : null;
+        } catch (MissingObjectException e) {
+            return null;
+        }
+    }
+
+    private static boolean startsWithAny(String name, String... prefixes) {
+        for (String prefix : prefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected Exchange createRefExchange(GitRefChange change) {
+        Exchange e = getEndpoint().createExchange();
+        e.getOut().setBody(change.getNewRef() != null ? change.getNewRef() : change.getOldRef());
+        e.getOut().setHeader(GitConstants.GIT_REF_NAME, change.getName());
+        e.getOut().setHeader(GitConstants.GIT_REF_EVENT, change.getType().name());
+        if (change.getOldId() != null) {
+            e.getOut().setHeader(GitConstants.GIT_OLD_OBJECT_ID, change.getOldId().name());
+        }
+        if (change.getNewId() != null) {
+            e.getOut().setHeader(GitConstants.GIT_NEW_OBJECT_ID, change.getNewId().name());
+        }
+        return e;
+    }
+
+    /**
+     * The body reporting a commit found by the walk: the commit itself, or a
+     * detached {@link GitCommit} copy if the endpoint asks for compact commits,
+     * in which case the walk no longer retains the raw commit body.
+     */
+    protected Object createCommitBody(RevWalk walk, RevCommit commit) throws IOException {
+        if (!endpoint.isCompactCommits()) {
+            return commit;
+        }
+        GitCommit body = endpoint.isCompactCommitPaths() ? GitCommit.valueOf(commit, walk) : GitCommit.valueOf(commit);
+        commit.disposeBody();
+        return body;
+    }
+
     protected Repository getRepository() {
         return repo;
     }
@@ -16,35 +16,52 @@
  */
 package org.apache.camel.component.git.consumer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
+import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitEndpoint;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevWalk;
 
 public class GitBranchConsumer extends AbstractGitConsumer {
 
-    private List used = new ArrayList();
+    private final GitEndpoint endpoint;
+
+    private SortedMap<String, Ref> branches = new TreeMap<String, Ref>();
 
     public GitBranchConsumer(GitEndpoint endpoint, Processor processor) {
         super(endpoint, processor);
+        this.endpoint = endpoint;
     }
 
     @Override
     protected int poll() throws Exception {
         int count = 0;
-        List<Ref> call = getGit().branchList().call();
-        for (Ref ref : call) {
-            if (!used.contains(ref.getName())) {
-                Exchange e = getEndpoint().createExchange();
-                e.getOut().setBody(ref);
+        fetchRemoteChanges();
+        SortedMap<String, Ref> current;
+        if (endpoint.isRemoteBranches()) {
+            current = getRefSnapshot(Constants.R_HEADS, Constants.R_REMOTES);
+        } else {
+            current = getRefSnapshot(Constants.R_HEADS);
+        }
+        RevWalk walk = new RevWalk(getRepository());
+        try {
+            for (GitRefChange change : GitRefChange.diff(branches, current)) {
+                Exchange e = createRefExchange(change);
+                if (change.getType() == GitRefChange.Type.UPDATED) {
+                    e.getOut().setHeader(GitConstants.GIT_UPDATE_TYPE, getUpdateType(walk, change).name());
+                }
                 getProcessor().process(e);
-                used.add(ref.getName());
                 count++;
             }
+        } finally {
+            walk.close();
         }
+        branches = current;
         return count;
     }
 
@@ -16,36 +16,396 @@
  */
 package org.apache.camel.component.git.consumer;
 
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
+import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitEndpoint;
+import org.apache.camel.util.ObjectHelper;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 
 public class GitCommitConsumer extends AbstractGitConsumer {
 
-    private List used = new ArrayList();
+    private static final String START_FROM_NOW = "now";
+
+    private static final String[] START_FROM_DATE_FORMATS = {"yyyy-MM-dd'T'HH:mm:ss", "yyyy-MM-dd"};
+
+    private final GitEndpoint endpoint;
+
+    private SortedMap<String, Ref> tips;
+
+    private TreeFilter pathFilter;
+
+    private ExecutorService executorService;
 
     public GitCommitConsumer(GitEndpoint endpoint, Processor processor) {
         super(endpoint, processor);
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        super.doStart();
+        pathFilter = createPathFilter(endpoint.getIncludePaths(), endpoint.getExcludePaths());
+        if (endpoint.getThreads() > 1) {
+            executorService = endpoint.getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "GitCommitConsumer", endpoint.getThreads());
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        if (executorService != null) {
+            endpoint.getCamelContext().getExecutorServiceManager().shutdown(executorService);
+            executorService = null;
+        }
     }
 
     @Override
     protected int poll() throws Exception {
         int count = 0;
-        Iterable<RevCommit> commits = getGit().log().all().call();
-        for (RevCommit commit : commits) {
-            if (!used.contains(commit.getId())) {
+        fetchRemoteChanges();
+        SortedMap<String, Ref> current = getRefSnapshot(Constants.R_REFS);
+        if (tips == null && START_FROM_NOW.equalsIgnoreCase(endpoint.getStartFrom())) {
+            tips = current;
+            return count;
+        }
+        RevWalk walk = new RevWalk(getRepository());
+        if (pathFilter != null) {
+            walk.setTreeFilter(pathFilter);
+        }
+        try {
+            List<RevCommit> boundaries = new ArrayList<RevCommit>();
+            List<GitRefChange> changes;
+            if (tips == null) {
+                changes = GitRefChange.diff(new TreeMap<String, Ref>(), current);
+                markStartPosition(walk, boundaries);
+            } else {
+                changes = GitRefChange.diff(tips, current);
+                for (Ref ref : tips.values()) {
+                    RevCommit commit = parseCommit(walk, GitRefChange.objectId(ref));
+                    if (commit != null) {
+                        boundaries.add(commit);
+                    }
+                }
+            }
+            if (executorService != null) {
+                count = processPerBranch(walk, changes, boundaries);
+            } else {
+                count = process(walk, changes, boundaries);
+            }
+        } finally {
+            walk.close();
+        }
+        tips = current;
+        return count;
+    }
+
+    private int process(RevWalk walk, List<GitRefChange> changes, List<RevCommit> boundaries) throws Exception {
+        int count = 0;
+        if (!markTip(walk, changes)) {
+            return count;
+        }
+        markBoundaries(walk, boundaries);
+        for (RevCommit commit : walk) {
+            Exchange e = getEndpoint().createExchange();
+            e.getOut().setBody(createCommitBody(walk, commit));
+            getProcessor().process(e);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Walks and processes the new commits of each changed ref on the thread
+     * pool, each ref with its own walk, in order, and different refs in
+     * parallel. Commits are processed as they are walked, never collected. The
+     * poll waits for all of them, so a ref is never processed by two polls at
+     * the same time.
+     * <p/>
+     * A commit reachable from several changed refs is reported once, with the
+     * first of them in the order of {@link #sortByAncestry}: a branch merged
+     * into another one comes before it, so its commits are reported with it.
+     */
+    private int processPerBranch(RevWalk walk, List<GitRefChange> changes, List<RevCommit> boundaries) throws Exception {
+        final RevFilter revFilter = walk.getRevFilter();
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+        // the commits reachable from these are reported by the previous polls or refs
+        final List<ObjectId> uninteresting = new ArrayList<ObjectId>();
+        for (RevCommit boundary : boundaries) {
+            uninteresting.add(boundary.copy());
+        }
+        for (final GitRefChange change : sortByAncestry(walk, changes)) {
+            final RevCommit tip = parseCommit(walk, change.getNewId());
+            if (tip == null) {
+                continue;
+            }
+            final List<ObjectId> excluded = new ArrayList<ObjectId>(uninteresting);
+            futures.add(executorService.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return processRef(change.getName(), tip.copy(), excluded, revFilter);
+                }
+            }));
+            uninteresting.add(tip.copy());
+        }
+        int count = 0;
+        Exception failure = null;
+        for (Future<Integer> future : futures) {
+            try {
+                count += future.get();
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return count;
+    }
+
+    private int processRef(String refName, ObjectId tip, List<ObjectId> uninteresting, RevFilter revFilter) throws Exception {
+        int count = 0;
+        RevWalk walk = new RevWalk(getRepository());
+        try {
+            if (pathFilter != null) {
+                walk.setTreeFilter(pathFilter.clone());
+            }
+            walk.setRevFilter(revFilter.clone());
+            walk.markStart(walk.parseCommit(tip));
+            for (ObjectId id : uninteresting) {
+                RevCommit commit = parseCommit(walk, id);
+                if (commit != null) {
+                    walk.markUninteresting(commit);
+                }
+            }
+            for (RevCommit commit : walk) {
                 Exchange e = getEndpoint().createExchange();
-                e.getOut().setBody(commit);
+                e.getOut().setBody(createCommitBody(walk, commit));
+                e.getOut().setHeader(GitConstants.GIT_REF_NAME, refName);
                 getProcessor().process(e);
-                used.add(commit.getId());
                 count++;
             }
+        } finally {
+            walk.close();
         }
         return count;
     }
 
+    /**
+     * Orders the changes so that a ref comes before the refs whose new tip
+     * reaches its new tip: a ref reaching fewer of the other new tips comes
+     * first. Refs pointing to the same commit, or unrelated ones, keep the order
+     * of their names.
+     */
+    private static List<GitRefChange> sortByAncestry(RevWalk walk, List<GitRefChange> changes) throws Exception {
+        List<RevCommit> tips = new ArrayList<RevCommit>();
+        for (GitRefChange change : changes) {
+            RevCommit tip = parseCommit(walk, change.getNewId());
+            if (tip != null) {
+                tips.add(tip);
+            }
+        }
+        final Map<GitRefChange, Integer> reached = new HashMap<GitRefChange, Integer>();
+        try {
+            for (GitRefChange change : changes) {
+                RevCommit tip = parseCommit(walk, change.getNewId());
+                int count = 0;
+                if (tip != null) {
+                    for (RevCommit other : tips) {
+                        if (walk.isMergedInto(other, tip)) {
+                            count++;
+                        }
+                    }
+                }
+                reached.put(change, count);
+            }
+        } finally {
+            walk.reset();
+        }
+        List<GitRefChange> sorted = new ArrayList<GitRefChange>(changes);
+        Collections.sort(sorted, new Comparator<GitRefChange>() {
+            @Override
+            public int compare(GitRefChange o1, GitRefChange o2) {
+                return reached.get(o1).compareTo(reached.get(o2));
+            }
+        });
+        return sorted;
+    }
+
+    private static boolean markTip(RevWalk walk, List<GitRefChange> changes) throws Exception {
+        boolean started = false;
+        for (GitRefChange change : changes) {
+            RevCommit commit = parseCommit(walk, change.getNewId());
+            if (commit != null) {
+                walk.markStart(commit);
+                started = true;
+            }
+        }
+        return started;
+    }
+
+    private static void markBoundaries(RevWalk walk, List<RevCommit> boundaries) throws Exception {
+        for (RevCommit commit : boundaries) {
+            walk.markUninteresting(commit);
+        }
+    }
+
+    /**
+     * Applies the start position to the first walk.
+     */
+    private void markStartPosition(RevWalk walk, List<RevCommit> boundaries) throws Exception {
+        String startFrom = endpoint.getStartFrom();
+        if (ObjectHelper.isEmpty(startFrom)) {
+            return;
+        }
+        Date date = parseDate(startFrom);
+        if (date != null) {
+            // the walk is ordered by commit time, so it stops at the first older commit
+            walk.setRevFilter(CommitTimeRevFilter.after(date));
+        } else {
+            ObjectId id = getRepository().resolve(startFrom);
+            if (id == null) {
+                throw new IllegalArgumentException("Cannot resolve the start position " + startFrom);
+            }
+            boundaries.add(walk.parseCommit(id));
+        }
+    }
+
+    /**
+     * Builds the filter keeping only the commits which change an included path
+     * outside of the excluded ones, or null if every commit is reported.
+     */
+    private static TreeFilter createPathFilter(String includePaths, String excludePaths) {
+        List<String> includes = splitPaths(includePaths);
+        List<String> excludes = splitPaths(excludePaths);
+        if (includes.isEmpty() && excludes.isEmpty()) {
+            return null;
+        }
+        List<TreeFilter> filters = new ArrayList<TreeFilter>();
+        if (!includes.isEmpty()) {
+            filters.add(PathFilterGroup.createFromStrings(includes));
+        }
+        if (!excludes.isEmpty()) {
+            filters.add(new ExcludePathFilter(excludes));
+        }
+        filters.add(TreeFilter.ANY_DIFF);
+        return AndTreeFilter.create(filters.toArray(new TreeFilter[filters.size()]));
+    }
+
+    private static List<String> splitPaths(String paths) {
+        List<String> result = new ArrayList<String>();
+        if (ObjectHelper.isEmpty(paths)) {
+            return result;
+        }
+        for (String path : paths.split(",")) {
+            path = path.trim();
+            if (path.endsWith("/**")) {
+                path = path.substring(0, path.length() - 3);
+            }
+            while (path.endsWith("/")) {
+                path = path.substring(0, path.length() - 1);
+            }
+            if (!path.isEmpty()) {
+                result.add(path);
+            }
+        }
+        return result;
+    }
+
+    private static Date parseDate(String value) {
+        for (String format : START_FROM_DATE_FORMATS) {
+            SimpleDateFormat dateFormat = new SimpleDateFormat(format);
+            dateFormat.setLenient(false);
+            ParsePosition position = new ParsePosition(0);
+            Date date = dateFormat.parse(value, position);
+            if (date != null && position.getIndex() == value.length()) {
+                return date;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skips the entries equal to or below one of the given paths. Unlike a
+     * negated {@link PathFilterGroup} it still enters the parent directories of
+     * an excluded path, so a nested path makes the walk recursive.
+     */
+    private static final class ExcludePathFilter extends TreeFilter {
+
+        private final byte[][] paths;
+
+        private final boolean recursive;
+
+        ExcludePathFilter(List<String> paths) {
+            this.paths = new byte[paths.size()][];
+            boolean nested = false;
+            for (int i = 0; i < paths.size(); i++) {
+                this.paths[i] = Constants.encode(paths.get(i));
+                nested |= paths.get(i).indexOf('/') >= 0;
+            }
+            this.recursive = nested;
+        }
+
+        @Override
+        public boolean include(TreeWalk walker) {
+            byte[] raw = walker.getRawPath();
+            int length = walker.getPathLength();
+            for (byte[] path : paths) {
+                if (isUnder(raw, length, path)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isUnder(byte[] raw, int length, byte[] path) {
+            if (length < path.length || (length > path.length && raw[path.length] != '/')) {
+                return false;
+            }
+            for (int i = 0; i < path.length; i++) {
+                if (raw[i] != path[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return recursive;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
 }
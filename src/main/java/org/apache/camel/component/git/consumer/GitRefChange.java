@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git.consumer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+
+/**
+ * A change of a ref between two polls.
+ */
+public class GitRefChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+
+    private final Ref oldRef;
+
+    private final Ref newRef;
+
+    public GitRefChange(Type type, Ref oldRef, Ref newRef) {
+        this.type = type;
+        this.oldRef = oldRef;
+        this.newRef = newRef;
+    }
+
+    /**
+     * Compares two snapshots of refs keyed by name in a single pass over both.
+     */
+    public static List<GitRefChange> diff(SortedMap<String, Ref> previous, SortedMap<String, Ref> current) {
+        List<GitRefChange> changes = new ArrayList<GitRefChange>();
+        Iterator<Map.Entry<String, Ref>> oldIt = previous.entrySet().iterator();
+        Iterator<Map.Entry<String, Ref>> newIt = current.entrySet().iterator();
+        Map.Entry<String, Ref> oldEntry = next(oldIt);
+        Map.Entry<String, Ref> newEntry = next(newIt);
+        while (oldEntry != null || newEntry != null) {
+            int cmp;
+            if (oldEntry == null) {
+                cmp = 1;
+            } else if (newEntry == null) {
+                cmp = -1;
+            } else {
+                cmp = oldEntry.getKey().compareTo(newEntry.getKey());
+            }
+            if (cmp < 0) {
+                changes.add(new GitRefChange(Type.DELETED, oldEntry.getValue(), null));
+                oldEntry = next(oldIt);
+            } else if (cmp > 0) {
+                changes.add(new GitRefChange(Type.CREATED, null, newEntry.getValue()));
+                newEntry = next(newIt);
+            } else {
+                if (!objectId(oldEntry.getValue()).equals(objectId(newEntry.getValue()))) {
+                    changes.add(new GitRefChange(Type.UPDATED, oldEntry.getValue(), newEntry.getValue()));
+                }
+                oldEntry = next(oldIt);
+                newEntry = next(newIt);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * The id the ref points to, peeled to the tagged object for annotated tags.
+     */
+    public static ObjectId objectId(Ref ref) {
+        if (ref.getPeeledObjectId() != null) {
+            return ref.getPeeledObjectId();
+        }
+        return ref.getObjectId();
+    }
+
+    private static <T> T next(Iterator<T> it) {
+        return it.hasNext() ? it.next() : null;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getName() {
+        return newRef != null ? newRef.getName() : oldRef.getName();
+    }
+
+    /**
+     * The ref before the change, null if it was created
+     */
+    public Ref getOldRef() {
+        return oldRef;
+    }
+
+    /**
+     * The ref after the change, null if it was deleted
+     */
+    public Ref getNewRef() {
+        return newRef;
+    }
+
+    public ObjectId getOldId() {
+        return oldRef != null ? objectId(oldRef) : null;
+    }
+
+    public ObjectId getNewId() {
+        return newRef != null ? objectId(newRef) : null;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + getName();
+    }
+}
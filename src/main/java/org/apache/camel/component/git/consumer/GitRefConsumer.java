@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git.consumer;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.git.GitConstants;
+import org.apache.camel.component.git.GitEndpoint;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Reports new commits, tag events and branch events reading the ref database
+ * once per poll.
+ */
+public class GitRefConsumer extends AbstractGitConsumer {
+
+    private final GitEndpoint endpoint;
+
+    private SortedMap<String, Ref> refs = new TreeMap<String, Ref>();
+
+    public GitRefConsumer(GitEndpoint endpoint, Processor processor) {
+        super(endpoint, processor);
+        this.endpoint = endpoint;
+    }
+
+    @Override
+    protected int poll() throws Exception {
+        int count = 0;
+        fetchRemoteChanges();
+        SortedMap<String, Ref> current;
+        if (endpoint.isRemoteBranches()) {
+            current = getRefSnapshot(Constants.R_HEADS, Constants.R_TAGS, Constants.R_REMOTES);
+        } else {
+            current = getRefSnapshot(Constants.R_HEADS, Constants.R_TAGS);
+        }
+        List<GitRefChange> changes = GitRefChange.diff(refs, current);
+        if (changes.isEmpty()) {
+            return count;
+        }
+        RevWalk walk = new RevWalk(getRepository());
+        try {
+            // commits first, so a ref event never points to a commit not reported yet
+            if (markNewCommits(walk, changes, refs.values())) {
+                for (RevCommit commit : walk) {
+                    Exchange e = getEndpoint().createExchange();
+                    e.getOut().setBody(createCommitBody(walk, commit));
+                    e.getOut().setHeader(GitConstants.GIT_TYPE, GitType.COMMIT.name());
+                    getProcessor().process(e);
+                    count++;
+                }
+                walk.reset();
+            }
+            for (GitRefChange change : changes) {
+                Exchange e = createRefExchange(change);
+                if (change.getName().startsWith(Constants.R_TAGS)) {
+                    e.getOut().setHeader(GitConstants.GIT_TYPE, GitType.TAG.name());
+                } else {
+                    e.getOut().setHeader(GitConstants.GIT_TYPE, GitType.BRANCH.name());
+                    if (change.getType() == GitRefChange.Type.UPDATED) {
+                        e.getOut().setHeader(GitConstants.GIT_UPDATE_TYPE, getUpdateType(walk, change).name());
+                    }
+                }
+                getProcessor().process(e);
+                count++;
+            }
+        } finally {
+            walk.close();
+        }
+        refs = current;
+        return count;
+    }
+
+}
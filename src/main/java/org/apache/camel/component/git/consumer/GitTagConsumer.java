@@ -16,17 +16,18 @@
  */
 package org.apache.camel.component.git.consumer;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.component.git.GitEndpoint;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 
 public class GitTagConsumer extends AbstractGitConsumer {
 
-    private List used = new ArrayList();
+    private SortedMap<String, Ref> tags = new TreeMap<String, Ref>();
 
     public GitTagConsumer(GitEndpoint endpoint, Processor processor) {
         super(endpoint, processor);
@@ -35,16 +36,14 @@ public class GitTagConsumer extends AbstractGitConsumer {
     @Override
     protected int poll() throws Exception {
         int count = 0;
-        List<Ref> call = getGit().tagList().call();
-        for (Ref ref : call) {
-            if (!used.contains(ref.getName())) {
-                Exchange e = getEndpoint().createExchange();
-                e.getOut().setBody(ref);
-                getProcessor().process(e);
-                used.add(ref.getName());
-                count++;
-            }
+        fetchRemoteChanges();
+        SortedMap<String, Ref> current = getRefSnapshot(Constants.R_TAGS);
+        for (GitRefChange change : GitRefChange.diff(tags, current)) {
+            Exchange e = createRefExchange(change);
+            getProcessor().process(e);
+            count++;
         }
+        tags = current;
         return count;
     }
 
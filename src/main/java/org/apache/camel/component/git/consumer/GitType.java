@@ -18,6 +18,6 @@ package org.apache.camel.component.git.consumer;
 
 public enum GitType {
 
-    COMMIT, TAG, BRANCH
+    COMMIT, TAG, BRANCH, REF
 
 }
\ No newline at end of file
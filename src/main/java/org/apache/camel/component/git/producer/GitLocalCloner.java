@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git.producer;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Clones a repository of the local file system without copying its objects
+ * through a transport.
+ * <p/>
+ * In shared mode the clone reads the objects of the source through an
+ * <tt>objects/info/alternates</tt> entry, so the source must outlive it. In
+ * hardlink mode the object files are hard linked, falling back to a copy when
+ * the two repositories are on different file systems. In both modes the refs
+ * are written directly, without the connectivity check of a fetch.
+ */
+public final class GitLocalCloner {
+
+    public static final String COPY = "copy";
+
+    public static final String SHARED = "shared";
+
+    public static final String HARDLINK = "hardlink";
+
+    private static final Logger LOG = LoggerFactory.getLogger(GitLocalCloner.class);
+
+    private static final String ORIGIN = Constants.DEFAULT_REMOTE_NAME;
+
+    private GitLocalCloner() {
+    }
+
+    /**
+     * The git directory of the repository a remote path points to, or null if
+     * it is not a local repository.
+     */
+    public static File resolveLocal(String remotePath) {
+        File dir;
+        if (remotePath.startsWith("file:")) {
+            dir = new File(URI.create(remotePath));
+        } else {
+            dir = new File(remotePath);
+        }
+        if (!dir.isDirectory()) {
+            return null;
+        }
+        return RepositoryCache.FileKey.resolve(dir, FS.DETECTED);
+    }
+
+    public static void clone(File sourceGitDir, File directory, String mode) throws Exception {
+        Git.init().setDirectory(directory).call().close();
+        File objects = new File(sourceGitDir, Constants.OBJECTS).getAbsoluteFile();
+        File targetObjects = new File(new File(directory, Constants.DOT_GIT), Constants.OBJECTS);
+        if (SHARED.equals(mode)) {
+            Path alternates = targetObjects.toPath().resolve("info").resolve("alternates");
+            Files.createDirectories(alternates.getParent());
+            Files.write(alternates, (objects.getPath() + "\n").getBytes("UTF-8"));
+        } else if (HARDLINK.equals(mode)) {
+            link(objects.toPath(), targetObjects.toPath());
+        } else {
+            throw new IllegalArgumentException("Unknown local clone mode " + mode);
+        }
+
+        Repository source = new FileRepositoryBuilder().setGitDir(sourceGitDir).setMustExist(true).build();
+        Repository target = new FileRepositoryBuilder().setWorkTree(directory).setMustExist(true).build();
+        try {
+            String branch = copyRefs(source, target, sourceGitDir);
+            if (branch != null) {
+                new Git(target).reset().setMode(ResetType.HARD).call();
+            }
+        } finally {
+            target.close();
+            source.close();
+        }
+    }
+
+    /**
+     * Writes the branches of the source as remote tracking refs and its tags,
+     * then creates and checks out the branch of the source HEAD. Returns that
+     * branch, or null if the source HEAD is not a branch.
+     */
+    private static String copyRefs(Repository source, Repository target, File sourceGitDir) throws IOException {
+        StoredConfig config = target.getConfig();
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, ORIGIN, "url", sourceGitDir.getAbsolutePath());
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, ORIGIN, "fetch",
+                "+" + Constants.R_HEADS + "*:" + Constants.R_REMOTES + ORIGIN + "/*");
+
+        BatchRefUpdate update = target.getRefDatabase().newBatchUpdate();
+        for (Ref ref : source.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+            String name = ref.getName().substring(Constants.R_HEADS.length());
+            update.addCommand(new ReceiveCommand(ObjectId.zeroId(), ref.getObjectId(), Constants.R_REMOTES + ORIGIN + "/" + name));
+        }
+        for (Ref ref : source.getRefDatabase().getRefs(Constants.R_TAGS).values()) {
+            update.addCommand(new ReceiveCommand(ObjectId.zeroId(), ref.getObjectId(), ref.getName()));
+        }
+        String branch = null;
+        Ref head = source.getRef(Constants.HEAD);
+        if (head != null && head.isSymbolic() && head.getObjectId() != null) {
+            branch = head.getTarget().getName();
+            update.addCommand(new ReceiveCommand(ObjectId.zeroId(), head.getObjectId(), branch));
+            String shortName = Repository.shortenRefName(branch);
+            config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, shortName, ConfigConstants.CONFIG_KEY_REMOTE, ORIGIN);
+            config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, shortName, ConfigConstants.CONFIG_KEY_MERGE, branch);
+        }
+        config.save();
+
+        RevWalk walk = new RevWalk(target);
+        try {
+            update.execute(walk, NullProgressMonitor.INSTANCE);
+        } finally {
+            walk.close();
+        }
+        for (ReceiveCommand command : update.getCommands()) {
+            if (command.getResult() != ReceiveCommand.Result.OK) {
+                throw new IOException("Cannot create " + command.getRefName() + ": " + command.getResult());
+            }
+        }
+        if (branch != null) {
+            RefUpdate.Result result = target.updateRef(Constants.HEAD).link(branch);
+            if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED && result != RefUpdate.Result.NO_CHANGE) {
+                throw new IOException("Cannot point HEAD to " + branch + ": " + result);
+            }
+        }
+        return branch;
+    }
+
+    /**
+     * Hard links the object files, copying the alternates and the files which
+     * cannot be linked.
+     */
+    private static void link(final Path from, final Path to) throws IOException {
+        final Path info = from.resolve("info");
+        Files.walkFileTree(from, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(to.resolve(from.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path target = to.resolve(from.relativize(file).toString());
+                if (file.startsWith(info)) {
+                    Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                    return FileVisitResult.CONTINUE;
+                }
+                try {
+                    Files.createLink(target, file);
+                } catch (IOException | UnsupportedOperationException e) {
+                    LOG.debug("Cannot link {}, copying it", file);
+                    Files.copy(file, target);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -32,4 +32,11 @@ public interface GitOperation {
     String LOG_OPERATION = "log";
     String PUSH_OPERATION = "push";
     String PULL_OPERATION = "pull";
+    String SHOW_OPERATION = "show";
+    String ARCHIVE_OPERATION = "archive";
+    String DIFF_OPERATION = "diff";
+    String BLAME_OPERATION = "blame";
+    String WRITE_OPERATION = "write";
+    String MERGE_OPERATION = "merge";
+    String FETCH_OPERATION = "fetch";
 }
@@ -16,22 +16,95 @@
  */
 package org.apache.camel.component.git.producer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.camel.Exchange;
+import org.apache.camel.component.git.GitCommit;
 import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitEndpoint;
 import org.apache.camel.impl.DefaultProducer;
+import org.apache.camel.util.FileUtil;
+import org.apache.camel.util.IOHelper;
+import org.apache.camel.util.LRUCache;
 import org.apache.camel.util.ObjectHelper;
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.ArchiveCommand;
+import org.eclipse.jgit.api.FetchCommand;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.MergeResult.MergeStatus;
 import org.eclipse.jgit.api.PullResult;
+import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.RmCommand;
 import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.TransportConfigCallback;
+import org.eclipse.jgit.archive.ArchiveFormats;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.errors.RevWalkException;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.Merger;
+import org.eclipse.jgit.merge.ResolveMerger;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.Transport;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,11 +112,29 @@ public class GitProducer extends DefaultProducer {
 
     private static final Logger LOG = LoggerFactory.getLogger(GitProducer.class);
 
+    private static final int PIPE_BUFFER_SIZE = 64 * 1024;
+
     private final GitEndpoint endpoint;
 
-    private Repository repo;
+    private volatile Repository repo;
+
+    private volatile Git git;
+
+    // held for reading by every operation and for writing by clone, init and
+    // stop, which close the repository the other operations use
+    private final ReadWriteLock repositoryLock = new ReentrantReadWriteLock();
+
+    private ExecutorService executorService;
+
+    private ExecutorService fetchExecutorService;
+
+    private Map<String, BlameResult> blameCache;
+
+    private Map<String, CachedLog> logCache;
 
-    private Git git;
+    private GitStatusScanner statusScanner;
+
+    private GitPushCoalescer pushCoalescer;
 
     public GitProducer(GitEndpoint endpoint) {
         super(endpoint);
@@ -53,15 +144,43 @@ public class GitProducer extends DefaultProducer {
     @Override
     protected void doStart() throws Exception {
         super.doStart();
-        this.repo = getLocalRepository();
-        this.git = new Git(repo);
+        // a clone or init endpoint opens the repository once it has created it
+        if (endpoint.isInMemory() || !isCreateOperation(endpoint.getOperation())) {
+            openRepository();
+        }
+        this.executorService = endpoint.getCamelContext().getExecutorServiceManager().newCachedThreadPool(this, "GitProducer");
+        ArchiveFormats.registerAll();
+        if (endpoint.getBlameCacheSize() > 0) {
+            this.blameCache = new LRUCache<String, BlameResult>(endpoint.getBlameCacheSize());
+        }
+        if (endpoint.getLogCacheSize() > 0) {
+            this.logCache = new LRUCache<String, CachedLog>(endpoint.getLogCacheSize());
+        }
+        if (endpoint.getPushCoalesceWindow() > 0) {
+            this.pushCoalescer = new GitPushCoalescer(endpoint.getPushCoalesceWindow());
+        }
     }
 
     @Override
     protected void doStop() throws Exception {
         super.doStop();
-        repo.close();
-        git.close();
+        ArchiveFormats.unregisterAll();
+        endpoint.getCamelContext().getExecutorServiceManager().shutdown(executorService);
+        synchronized (this) {
+            if (fetchExecutorService != null) {
+                endpoint.getCamelContext().getExecutorServiceManager().shutdown(fetchExecutorService);
+                fetchExecutorService = null;
+            }
+        }
+        // waits for the running operations and the writers of the streamed
+        // bodies, which complete or time out, before closing their repository
+        Lock lock = repositoryLock.writeLock();
+        lock.lock();
+        try {
+            closeRepository();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -75,7 +194,23 @@ public class GitProducer extends DefaultProducer {
         if (ObjectHelper.isEmpty(endpoint.getLocalPath())) {
             throw new IllegalArgumentException("Local path must specified to execute " + operation);
         }
+        boolean create = isCreateOperation(operation) && !endpoint.isInMemory();
+        Lock lock = create ? repositoryLock.writeLock() : repositoryLock.readLock();
+        lock.lock();
+        try {
+            if (create) {
+                // the repository opened so far, if any, is reopened on next use
+                closeRepository();
+            } else if (repo == null) {
+                openRepository();
+            }
+            process(exchange, operation);
+        } finally {
+            lock.unlock();
+        }
+    }
 
+    private void process(Exchange exchange, String operation) throws Exception {
         switch (operation) {
         
         case GitOperation.CLONE_OPERATION:
@@ -133,6 +268,34 @@ public class GitProducer extends DefaultProducer {
         case GitOperation.DELETE_TAG_OPERATION:
             doDeleteTag(exchange, operation);
             break;
+
+        case GitOperation.SHOW_OPERATION:
+            doShow(exchange, operation);
+            break;
+
+        case GitOperation.ARCHIVE_OPERATION:
+            doArchive(exchange, operation);
+            break;
+
+        case GitOperation.DIFF_OPERATION:
+            doDiff(exchange, operation);
+            break;
+
+        case GitOperation.BLAME_OPERATION:
+            doBlame(exchange, operation);
+            break;
+
+        case GitOperation.WRITE_OPERATION:
+            doWrite(exchange, operation);
+            break;
+
+        case GitOperation.MERGE_OPERATION:
+            doMerge(exchange, operation);
+            break;
+
+        case GitOperation.FETCH_OPERATION:
+            doFetch(exchange, operation);
+            break;
                 
         default:
             throw new IllegalArgumentException("Local path must specified to execute " + operation);
@@ -144,10 +307,19 @@ public class GitProducer extends DefaultProducer {
         if (ObjectHelper.isEmpty(endpoint.getLocalPath())) {
             throw new IllegalArgumentException("Local path must specified to execute " + operation);
         }
+        if (endpoint.isInMemory()) {
+            doCloneInMemory(operation);
+            return;
+        }
         try {
             File localRepo = new File(endpoint.getLocalPath(), "");
             if (!localRepo.exists()) {
-                result = git.cloneRepository().setURI(endpoint.getRemotePath()).setDirectory(new File(endpoint.getLocalPath(), "")).call();
+                File source = GitLocalCloner.COPY.equals(endpoint.getCloneMode()) ? null : GitLocalCloner.resolveLocal(endpoint.getRemotePath());
+                if (source != null) {
+                    GitLocalCloner.clone(source, localRepo, endpoint.getCloneMode());
+                } else {
+                    result = Git.cloneRepository().setURI(endpoint.getRemotePath()).setDirectory(new File(endpoint.getLocalPath(), "")).call();
+                }
             } else {
                 throw new IllegalArgumentException("The local repository directory already exists");
             }
@@ -155,7 +327,9 @@ public class GitProducer extends DefaultProducer {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
         } finally {
-            result.close();
+            if (result != null) {
+                result.close();
+            }
         }
     }
 
@@ -164,28 +338,38 @@ public class GitProducer extends DefaultProducer {
         if (ObjectHelper.isEmpty(endpoint.getLocalPath())) {
             throw new IllegalArgumentException("Local path must specified to execute " + operation);
         }
+        if (endpoint.isInMemory()) {
+            // created when opened
+            return;
+        }
         try {
-            result = git.init().setDirectory(new File(endpoint.getLocalPath(), "")).setBare(false).call();
+            result = Git.init().setDirectory(new File(endpoint.getLocalPath(), "")).setBare(false).call();
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
         } finally {
-            result.close();
+            if (result != null) {
+                result.close();
+            }
         }
     }
 
     protected void doAdd(Exchange exchange, String operation) throws Exception {
-        String fileName = null;
-        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME))) {
-            fileName = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class);
-        } else {
+        requireWorkTree(operation);
+        List<String> fileNames = getFileNamesOrBody(exchange);
+        if (fileNames.isEmpty()) {
             throw new IllegalArgumentException("File name must be specified to execute " + operation);
         }
         try {
             if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
                 git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
             }
-            git.add().addFilepattern(fileName).call();
+            // a single command locks, reads and writes the index once for all the paths
+            AddCommand command = git.add();
+            for (String fileName : fileNames) {
+                command.addFilepattern(fileName);
+            }
+            command.call();
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
@@ -193,17 +377,24 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doRemove(Exchange exchange, String operation) throws Exception {
-        String fileName = null;
-        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME))) {
-            fileName = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class);
-        } else {
+        List<String> fileNames = getFileNamesOrBody(exchange);
+        if (fileNames.isEmpty()) {
             throw new IllegalArgumentException("File name must be specified to execute " + operation);
         }
+        if (endpoint.isInMemory()) {
+            endpoint.getInMemoryRepository().unstage(fileNames);
+            return;
+        }
         try {
             if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
                 git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
             }
-            git.rm().addFilepattern(fileName).call();
+            // a single command locks, reads and writes the index once for all the paths
+            RmCommand command = git.rm();
+            for (String fileName : fileNames) {
+                command.addFilepattern(fileName);
+            }
+            command.call();
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
@@ -217,6 +408,10 @@ public class GitProducer extends DefaultProducer {
         } else {
             throw new IllegalArgumentException("Commit message must be specified to execute " + operation);
         }
+        if (endpoint.isInMemory()) {
+            endpoint.getInMemoryRepository().commit(commitMessage, new PersonIdent(repo));
+            return;
+        }
         try {
             if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
                 git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
@@ -229,6 +424,7 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doCommitAll(Exchange exchange, String operation) throws Exception {
+        requireWorkTree(operation);
         String commitMessage = null;
         if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_COMMIT_MESSAGE))) {
             commitMessage = exchange.getIn().getHeader(GitConstants.GIT_COMMIT_MESSAGE, String.class);
@@ -247,6 +443,10 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doCreateBranch(Exchange exchange, String operation) throws Exception {
+        if (isBatch(exchange)) {
+            doBatchCreate(operation, Constants.R_HEADS, getBatchTargets(exchange, operation));
+            return;
+        }
         if (ObjectHelper.isEmpty(endpoint.getBranchName())) {
             throw new IllegalArgumentException("Branch Name must be specified to execute " + operation);
         }
@@ -259,6 +459,10 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doDeleteBranch(Exchange exchange, String operation) throws Exception {
+        if (isBatch(exchange)) {
+            doBatchDelete(operation, Constants.R_HEADS, getBatchNames(exchange, operation));
+            return;
+        }
         if (ObjectHelper.isEmpty(endpoint.getBranchName())) {
             throw new IllegalArgumentException("Branch Name must be specified to execute " + operation);
         }
@@ -271,12 +475,18 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doStatus(Exchange exchange, String operation) throws Exception {
+        requireWorkTree(operation);
         Status status = null;
         try {
             if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
                 git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
             }
-            status = git.status().call();
+            List<String> paths = getFileNames(exchange);
+            if (endpoint.isStatusIncremental() && paths.isEmpty()) {
+                status = getStatusScanner().status();
+            } else {
+                status = GitStatusScanner.scan(repo, paths, endpoint.isStatusUntracked());
+            }
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
@@ -285,17 +495,59 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doLog(Exchange exchange, String operation) throws Exception {
-        Iterable<RevCommit> revCommit = null;
+        Iterable<?> log = null;
         try {
             if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
                 git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
             }
-            revCommit = git.log().call();
+            String key = null;
+            if (logCache != null) {
+                ObjectId tip = repo.resolve(Constants.HEAD);
+                if (tip != null) {
+                    key = tip.name() + " " + endpoint.isCompactCommits() + " " + endpoint.isCompactCommitPaths();
+                    log = getCachedLog(key);
+                }
+            }
+            if (log == null) {
+                Iterable<RevCommit> revCommit = git.log().call();
+                if (key == null) {
+                    log = endpoint.isCompactCommits() ? toCompactCommits(revCommit) : revCommit;
+                } else if (endpoint.isCompactCommits()) {
+                    // a walk can be iterated once only, so the cache keeps the copies
+                    List<GitCommit> commits = new ArrayList<GitCommit>();
+                    for (GitCommit commit : toCompactCommits(revCommit)) {
+                        commits.add(commit);
+                    }
+                    log = Collections.unmodifiableList(commits);
+                    logCache.put(key, new CachedLog(log, System.currentTimeMillis()));
+                } else {
+                    // the cache keeps the ids only, as a commit holds the graph of its walk
+                    List<ObjectId> ids = new ArrayList<ObjectId>();
+                    for (RevCommit commit : revCommit) {
+                        ids.add(commit.copy());
+                        commit.disposeBody();
+                    }
+                    log = new CommitIdList(repo, ids);
+                    logCache.put(key, new CachedLog(log, System.currentTimeMillis()));
+                }
+            }
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
             throw e;
         }
-        exchange.getOut().setBody(revCommit);
+        exchange.getOut().setBody(log);
+    }
+
+    private Iterable<?> getCachedLog(String key) {
+        CachedLog cached = logCache.get(key);
+        if (cached == null) {
+            return null;
+        }
+        if (endpoint.getLogCacheTtl() > 0 && System.currentTimeMillis() - cached.created >= endpoint.getLogCacheTtl()) {
+            logCache.remove(key);
+            return null;
+        }
+        return cached.commits;
     }
 
     protected void doPush(Exchange exchange, String operation) throws Exception {
@@ -304,14 +556,18 @@ public class GitProducer extends DefaultProducer {
             if (ObjectHelper.isEmpty(endpoint.getRemotePath())) {
                 throw new IllegalArgumentException("Remote path must be specified to execute " + operation);
             }
-            if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
-                git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
-            }
-            if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
-                UsernamePasswordCredentialsProvider credentials = new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword());
-                result = git.push().setCredentialsProvider(credentials).setRemote(endpoint.getRemotePath()).call();
+            final List<RefSpec> refSpecs = getPushRefSpecs(exchange);
+            final boolean pushTags = exchange.getIn().getHeader(GitConstants.GIT_PUSH_TAGS, false, Boolean.class);
+            Callable<Iterable<PushResult>> push = new Callable<Iterable<PushResult>>() {
+                @Override
+                public Iterable<PushResult> call() throws Exception {
+                    return push(refSpecs, pushTags);
+                }
+            };
+            if (pushCoalescer != null) {
+                result = pushCoalescer.push(getPushKey(refSpecs, pushTags), push);
             } else {
-                result = git.push().setRemote(endpoint.getRemotePath()).call();
+                result = push.call();
             }
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
@@ -320,7 +576,96 @@ public class GitProducer extends DefaultProducer {
         exchange.getOut().setBody(result);
     }
 
+    /**
+     * Pushes the given refspecs, or the default ones if there are none, in a
+     * single connection. Returns no result without connecting when every given
+     * refspec is already up to date and no tags are pushed.
+     */
+    private Iterable<PushResult> push(List<RefSpec> refSpecs, boolean pushTags) throws Exception {
+        if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
+            git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
+        }
+        PushCommand command = git.push().setRemote(endpoint.getRemotePath()).setTransportConfigCallback(getTransportConfig());
+        if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
+            command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword()));
+        }
+        if (!refSpecs.isEmpty()) {
+            List<RefSpec> changed = withoutUpToDate(refSpecs);
+            if (changed.isEmpty() && !pushTags) {
+                return Collections.emptyList();
+            }
+            command.setRefSpecs(changed);
+        }
+        if (pushTags) {
+            command.setPushTags();
+        }
+        return command.call();
+    }
+
+    /**
+     * The key of the pushes doing the same thing, whatever the order of their
+     * refspecs or the form of the branch name.
+     */
+    private String getPushKey(List<RefSpec> refSpecs, boolean pushTags) {
+        Set<String> specs = new TreeSet<String>();
+        for (RefSpec refSpec : refSpecs) {
+            specs.add(refSpec.toString());
+        }
+        String branch = ObjectHelper.isNotEmpty(endpoint.getBranchName()) ? Constants.R_HEADS + shortName(Constants.R_HEADS, endpoint.getBranchName()) : "";
+        return endpoint.getRemotePath() + " " + branch + " " + specs + " " + pushTags;
+    }
+
+    private List<RefSpec> getPushRefSpecs(Exchange exchange) {
+        List<RefSpec> refSpecs = new ArrayList<RefSpec>();
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_PUSH_REF_SPECS))) {
+            Iterator<Object> it = ObjectHelper.createIterator(exchange.getIn().getHeader(GitConstants.GIT_PUSH_REF_SPECS));
+            while (it.hasNext()) {
+                Object refSpec = it.next();
+                refSpecs.add(refSpec instanceof RefSpec ? (RefSpec) refSpec : new RefSpec(refSpec.toString().trim()));
+            }
+        }
+        return refSpecs;
+    }
+
+    /**
+     * Drops the refspecs whose source already has the value of the matching
+     * remote tracking ref. Only a configured remote has tracking refs; forced,
+     * wildcard and delete refspecs are always kept.
+     */
+    private List<RefSpec> withoutUpToDate(List<RefSpec> refSpecs) throws Exception {
+        if (!repo.getConfig().getSubsections(ConfigConstants.CONFIG_REMOTE_SECTION).contains(endpoint.getRemotePath())) {
+            return refSpecs;
+        }
+        List<RefSpec> fetchSpecs = new RemoteConfig(repo.getConfig(), endpoint.getRemotePath()).getFetchRefSpecs();
+        List<RefSpec> changed = new ArrayList<RefSpec>();
+        for (RefSpec refSpec : refSpecs) {
+            if (refSpec.isForceUpdate() || refSpec.isWildcard() || refSpec.getSource() == null
+                    || !isUpToDate(refSpec, fetchSpecs)) {
+                changed.add(refSpec);
+            } else {
+                LOG.debug("Skipping the up to date refspec {}", refSpec);
+            }
+        }
+        return changed;
+    }
+
+    private boolean isUpToDate(RefSpec refSpec, List<RefSpec> fetchSpecs) throws IOException {
+        ObjectId local = repo.resolve(refSpec.getSource());
+        String destination = refSpec.getDestination() != null ? refSpec.getDestination() : refSpec.getSource();
+        if (!destination.startsWith(Constants.R_REFS)) {
+            destination = Constants.R_HEADS + destination;
+        }
+        for (RefSpec fetchSpec : fetchSpecs) {
+            if (fetchSpec.matchSource(destination)) {
+                ObjectId tracking = repo.resolve(fetchSpec.expandFromSource(destination).getDestination());
+                return local != null && local.equals(tracking);
+            }
+        }
+        return false;
+    }
+
     protected void doPull(Exchange exchange, String operation) throws Exception {
+        requireWorkTree(operation);
         PullResult result = null;
         try {
             if (ObjectHelper.isEmpty(endpoint.getRemotePath())) {
@@ -331,9 +676,64 @@ public class GitProducer extends DefaultProducer {
             }
             if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
                 UsernamePasswordCredentialsProvider credentials = new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword());
-                result = git.pull().setCredentialsProvider(credentials).setRemote(endpoint.getRemotePath()).call();
+                result = git.pull().setCredentialsProvider(credentials).setRemote(endpoint.getRemotePath()).setTransportConfigCallback(getTransportConfig()).call();
             } else {
-                result = git.pull().setRemote(endpoint.getRemotePath()).call();
+                result = git.pull().setRemote(endpoint.getRemotePath()).setTransportConfigCallback(getTransportConfig()).call();
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        exchange.getOut().setBody(result);
+    }
+
+    /**
+     * Fetches the remotes of the exchange header, or the comma separated ones of
+     * the remote path, at most fetchParallelism at a time. The body is a map of
+     * each remote to its {@link FetchResult}, in the order of the remotes. The
+     * remotes are usually configured ones, so each updates its own tracking
+     * refs; FETCH_HEAD is not reliable when several are fetched.
+     */
+    protected void doFetch(Exchange exchange, String operation) throws Exception {
+        List<String> remotes = getRemotes(exchange);
+        if (remotes.isEmpty()) {
+            throw new IllegalArgumentException("Remote path must be specified to execute " + operation);
+        }
+        ExecutorService executor = getFetchExecutorService();
+        Map<String, FetchResult> result = new LinkedHashMap<String, FetchResult>();
+        try {
+            Map<String, Future<FetchResult>> fetches = new LinkedHashMap<String, Future<FetchResult>>();
+            for (final String remote : remotes) {
+                fetches.put(remote, executor.submit(new Callable<FetchResult>() {
+                    @Override
+                    public FetchResult call() throws Exception {
+                        FetchCommand fetch = git.fetch().setRemote(remote).setTransportConfigCallback(getTransportConfig());
+                        if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
+                            fetch.setCredentialsProvider(new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword()));
+                        }
+                        return fetch.call();
+                    }
+                }));
+            }
+            // wait for every fetch, so a failing remote does not hide the others
+            Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+            for (Map.Entry<String, Future<FetchResult>> fetch : fetches.entrySet()) {
+                try {
+                    result.put(fetch.getKey(), fetch.getValue().get());
+                } catch (ExecutionException e) {
+                    failures.put(fetch.getKey(), e.getCause());
+                }
+            }
+            if (!failures.isEmpty()) {
+                IllegalStateException failure = new IllegalStateException("Git " + operation + " operation could not fetch " + failures.keySet());
+                for (Throwable cause : failures.values()) {
+                    if (failure.getCause() == null) {
+                        failure.initCause(cause);
+                    } else {
+                        failure.addSuppressed(cause);
+                    }
+                }
+                throw failure;
             }
         } catch (Exception e) {
             LOG.error("There was an error in Git " + operation + " operation");
@@ -342,7 +742,42 @@ public class GitProducer extends DefaultProducer {
         exchange.getOut().setBody(result);
     }
 
+    /**
+     * The pool of the fetch operation, created on first use.
+     */
+    private synchronized ExecutorService getFetchExecutorService() {
+        if (fetchExecutorService == null) {
+            if (endpoint.getFetchParallelism() <= 0) {
+                throw new IllegalArgumentException("The fetch parallelism must be positive, it is " + endpoint.getFetchParallelism());
+            }
+            fetchExecutorService = endpoint.getCamelContext().getExecutorServiceManager().newFixedThreadPool(this, "GitProducerFetch", endpoint.getFetchParallelism());
+        }
+        return fetchExecutorService;
+    }
+
+    private List<String> getRemotes(Exchange exchange) {
+        Object remotes = exchange.getIn().getHeader(GitConstants.GIT_REMOTES);
+        if (ObjectHelper.isEmpty(remotes)) {
+            remotes = endpoint.getRemotePath();
+        }
+        List<String> names = new ArrayList<String>();
+        if (ObjectHelper.isNotEmpty(remotes)) {
+            Iterator<Object> it = ObjectHelper.createIterator(remotes);
+            while (it.hasNext()) {
+                String name = it.next().toString().trim();
+                if (!name.isEmpty() && !names.contains(name)) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
     protected void doCreateTag(Exchange exchange, String operation) throws Exception {
+        if (isBatch(exchange)) {
+            doBatchCreate(operation, Constants.R_TAGS, getBatchTargets(exchange, operation));
+            return;
+        }
         if (ObjectHelper.isEmpty(endpoint.getTagName())) {
             throw new IllegalArgumentException("Tag Name must be specified to execute " + operation);
         }
@@ -355,6 +790,10 @@ public class GitProducer extends DefaultProducer {
     }
 
     protected void doDeleteTag(Exchange exchange, String operation) throws Exception {
+        if (isBatch(exchange)) {
+            doBatchDelete(operation, Constants.R_TAGS, getBatchNames(exchange, operation));
+            return;
+        }
         if (ObjectHelper.isEmpty(endpoint.getTagName())) {
             throw new IllegalArgumentException("Tag Name must be specified to execute " + operation);
         }
@@ -366,6 +805,751 @@ public class GitProducer extends DefaultProducer {
         }
     }
 
+    /**
+     * Creates the branches or annotated tags of a batch, each pointing to its
+     * target revision, with a single ref database update.
+     */
+    private void doBatchCreate(String operation, String prefix, Map<String, String> targets) throws Exception {
+        List<ReceiveCommand> commands = new ArrayList<ReceiveCommand>();
+        RevWalk walk = new RevWalk(repo);
+        ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            PersonIdent tagger = new PersonIdent(repo);
+            for (Map.Entry<String, String> entry : targets.entrySet()) {
+                String name = shortName(prefix, entry.getKey());
+                ObjectId target = repo.resolve(entry.getValue());
+                if (target == null) {
+                    throw new IllegalArgumentException("Cannot resolve " + entry.getValue() + " to execute " + operation);
+                }
+                if (Constants.R_TAGS.equals(prefix)) {
+                    TagBuilder tag = new TagBuilder();
+                    tag.setTag(name);
+                    tag.setObjectId(walk.parseAny(target));
+                    tag.setTagger(tagger);
+                    target = inserter.insert(tag);
+                } else {
+                    target = walk.parseCommit(target);
+                }
+                commands.add(new ReceiveCommand(ObjectId.zeroId(), target, prefix + name));
+            }
+            inserter.flush();
+            updateRefs(walk, commands, operation);
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        } finally {
+            inserter.close();
+            walk.close();
+        }
+    }
+
+    /**
+     * Deletes the branches or tags of a batch with a single ref database update.
+     * Unlike the single branch deletion, unmerged branches are deleted too.
+     */
+    private void doBatchDelete(String operation, String prefix, List<String> names) throws Exception {
+        RevWalk walk = new RevWalk(repo);
+        try {
+            Map<String, Ref> refs = repo.getRefDatabase().getRefs(prefix);
+            List<ReceiveCommand> commands = new ArrayList<ReceiveCommand>();
+            for (String name : names) {
+                Ref ref = refs.get(shortName(prefix, name));
+                if (ref == null) {
+                    throw new IllegalArgumentException("The ref " + prefix + shortName(prefix, name) + " does not exist");
+                }
+                commands.add(new ReceiveCommand(ref.getObjectId(), ObjectId.zeroId(), ref.getName()));
+            }
+            updateRefs(walk, commands, operation);
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        } finally {
+            walk.close();
+        }
+    }
+
+    private void updateRefs(RevWalk walk, List<ReceiveCommand> commands, String operation) throws IOException {
+        BatchRefUpdate update = repo.getRefDatabase().newBatchUpdate();
+        update.addCommand(commands);
+        update.execute(walk, NullProgressMonitor.INSTANCE);
+        List<String> failures = new ArrayList<String>();
+        for (ReceiveCommand command : commands) {
+            if (command.getResult() != ReceiveCommand.Result.OK) {
+                failures.add(command.getRefName() + " " + command.getResult());
+            }
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException("Git " + operation + " operation could not update " + failures);
+        }
+    }
+
+    private static String shortName(String prefix, String name) {
+        return name.startsWith(prefix) ? name.substring(prefix.length()) : name;
+    }
+
+    protected void doShow(Exchange exchange, String operation) throws Exception {
+        String fileName = null;
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME))) {
+            fileName = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class);
+        } else {
+            throw new IllegalArgumentException("File name must be specified to execute " + operation);
+        }
+        String revision = getRevision(exchange);
+        ObjectLoader loader = null;
+        try {
+            ObjectId blobId = repo.resolve(revision + ":" + fileName);
+            if (blobId == null) {
+                throw new IllegalArgumentException("The file " + fileName + " does not exist at revision " + revision);
+            }
+            loader = repo.open(blobId, Constants.OBJ_BLOB);
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        // blobs above the stream file threshold of the component are streamed from
+        // the object database, smaller ones are already inflated in memory
+        if (loader.isLarge()) {
+            exchange.getOut().setBody(loader.openStream());
+        } else {
+            exchange.getOut().setBody(loader.getCachedBytes());
+        }
+    }
+
+    protected void doArchive(Exchange exchange, String operation) throws Exception {
+        String revision = getRevision(exchange);
+        final ObjectId tree;
+        try {
+            tree = repo.resolve(revision);
+            if (tree == null) {
+                throw new IllegalArgumentException("The revision " + revision + " does not exist");
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        final String format = exchange.getIn().getHeader(GitConstants.GIT_ARCHIVE_FORMAT, "zip", String.class);
+        final String prefix = exchange.getIn().getHeader(GitConstants.GIT_ARCHIVE_PREFIX, String.class);
+        final List<String> paths = getFileNames(exchange);
+        InputStream body = pipe(operation, new OutputWriter() {
+            @Override
+            public void write(OutputStream out) throws Exception {
+                ArchiveCommand archive = git.archive().setTree(tree).setFormat(format).setOutputStream(out);
+                if (ObjectHelper.isNotEmpty(prefix)) {
+                    archive.setPrefix(prefix);
+                }
+                if (!paths.isEmpty()) {
+                    archive.setPaths(paths.toArray(new String[paths.size()]));
+                }
+                archive.call();
+            }
+        });
+        exchange.getOut().setBody(body);
+    }
+
+    protected void doDiff(Exchange exchange, String operation) throws Exception {
+        String oldRevision = null;
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_OLD_REVISION))) {
+            oldRevision = exchange.getIn().getHeader(GitConstants.GIT_OLD_REVISION, String.class);
+        } else {
+            throw new IllegalArgumentException("Old revision must be specified to execute " + operation);
+        }
+        String newRevision = getRevision(exchange);
+        final ObjectId oldTree;
+        final ObjectId newTree;
+        try {
+            oldTree = repo.resolve(oldRevision);
+            if (oldTree == null) {
+                throw new IllegalArgumentException("The revision " + oldRevision + " does not exist");
+            }
+            newTree = repo.resolve(newRevision);
+            if (newTree == null) {
+                throw new IllegalArgumentException("The revision " + newRevision + " does not exist");
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        final List<String> paths = getFileNames(exchange);
+        final Integer contextLines = exchange.getIn().getHeader(GitConstants.GIT_DIFF_CONTEXT_LINES, Integer.class);
+        final Integer renameLimit = exchange.getIn().getHeader(GitConstants.GIT_DIFF_RENAME_LIMIT, Integer.class);
+        boolean summary = exchange.getIn().getHeader(GitConstants.GIT_DIFF_SUMMARY, false, Boolean.class);
+        if (summary) {
+            List<DiffEntry> entries = null;
+            DiffFormatter formatter = createDiffFormatter(DisabledOutputStream.INSTANCE, paths, contextLines, renameLimit);
+            try {
+                entries = formatter.scan(oldTree, newTree);
+            } catch (Exception e) {
+                LOG.error("There was an error in Git " + operation + " operation");
+                throw e;
+            } finally {
+                formatter.close();
+            }
+            exchange.getOut().setBody(entries);
+        } else {
+            InputStream body = pipe(operation, new OutputWriter() {
+                @Override
+                public void write(OutputStream out) throws Exception {
+                    DiffFormatter formatter = createDiffFormatter(out, paths, contextLines, renameLimit);
+                    try {
+                        formatter.format(oldTree, newTree);
+                        formatter.flush();
+                    } finally {
+                        formatter.close();
+                    }
+                }
+            });
+            exchange.getOut().setBody(body);
+        }
+    }
+
+    protected void doBlame(Exchange exchange, String operation) throws Exception {
+        String fileName = null;
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME))) {
+            fileName = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class);
+        } else {
+            throw new IllegalArgumentException("File name must be specified to execute " + operation);
+        }
+        String revision = getRevision(exchange);
+        BlameResult result = null;
+        try {
+            ObjectId commitId = repo.resolve(revision + "^{commit}");
+            if (commitId == null) {
+                throw new IllegalArgumentException("The revision " + revision + " does not exist");
+            }
+            // a commit id never changes its content, so the blame of a path at that commit can be reused
+            String key = commitId.name() + ":" + fileName;
+            if (blameCache != null) {
+                result = blameCache.get(key);
+            }
+            if (result == null) {
+                result = git.blame().setStartCommit(commitId).setFilePath(fileName).call();
+                if (result == null) {
+                    throw new IllegalArgumentException("The file " + fileName + " does not exist at revision " + revision);
+                }
+                if (blameCache != null) {
+                    blameCache.put(key, result);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        exchange.getOut().setBody(result);
+    }
+
+    /**
+     * Stores the body as the content of a file and stages it, inserting the blob
+     * and editing the index entry directly. A streamed body is first written to
+     * disk, the working tree file or a temporary one, as the object inserter
+     * needs the length up front, so the content is never held in memory. The file
+     * name must be a valid repository path resolving inside the working tree,
+     * which is checked before anything is written.
+     */
+    protected void doWrite(Exchange exchange, String operation) throws Exception {
+        String fileName = null;
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME))) {
+            fileName = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class);
+        } else {
+            throw new IllegalArgumentException("File name must be specified to execute " + operation);
+        }
+        Object body = exchange.getIn().getBody();
+        if (body == null) {
+            throw new IllegalArgumentException("The content must be specified in the body to execute " + operation);
+        }
+        try {
+            new DirCacheEntry(fileName);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid file name " + fileName + " to execute " + operation, e);
+        }
+        ObjectId blobId = null;
+        if (endpoint.isInMemory()) {
+            if (body instanceof byte[] || body instanceof String) {
+                byte[] content = exchange.getIn().getBody(byte[].class);
+                blobId = insertBlob(new ByteArrayInputStream(content), content.length);
+                endpoint.getInMemoryRepository().stage(fileName, blobId, content.length);
+            } else {
+                File file = File.createTempFile("camel-git", ".tmp");
+                try {
+                    blobId = insertBody(exchange, file);
+                    endpoint.getInMemoryRepository().stage(fileName, blobId, file.length());
+                } finally {
+                    FileUtil.deleteFile(file);
+                }
+            }
+            exchange.getOut().setBody(blobId);
+            return;
+        }
+        try {
+            if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
+                git.checkout().setCreateBranch(false).setName(endpoint.getBranchName()).call();
+            }
+            File target = new File(repo.getWorkTree(), fileName);
+            if (endpoint.isWriteWorkTree() && !target.getCanonicalPath().startsWith(repo.getWorkTree().getCanonicalPath() + File.separator)) {
+                throw new IllegalArgumentException("File name " + fileName + " is outside of the working tree to execute " + operation);
+            }
+            if (body instanceof byte[] || body instanceof String) {
+                byte[] content = exchange.getIn().getBody(byte[].class);
+                if (endpoint.isWriteWorkTree()) {
+                    Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
+                    Files.write(target.toPath(), content);
+                }
+                blobId = insertBlob(new ByteArrayInputStream(content), content.length);
+                stage(fileName, blobId, content.length, endpoint.isWriteWorkTree() ? target.lastModified() : 0);
+            } else {
+                File file = endpoint.isWriteWorkTree() ? target : File.createTempFile("camel-git", ".tmp");
+                try {
+                    Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
+                    blobId = insertBody(exchange, file);
+                    stage(fileName, blobId, file.length(), endpoint.isWriteWorkTree() ? file.lastModified() : 0);
+                } finally {
+                    if (!endpoint.isWriteWorkTree()) {
+                        FileUtil.deleteFile(file);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+        exchange.getOut().setBody(blobId);
+    }
+
+    /**
+     * Merges the revision of the exchange into the branch of the endpoint, or
+     * the checked out one, without touching the index or the working tree: the
+     * merged tree and commit are written to the object database and the branch
+     * is moved to them. A conflicting merge leaves the branch unchanged and
+     * reports the conflicts in the result. As the working tree is not updated,
+     * the branch checked out in a non bare repository cannot be merged into.
+     */
+    protected void doMerge(Exchange exchange, String operation) throws Exception {
+        if (ObjectHelper.isEmpty(exchange.getIn().getHeader(GitConstants.GIT_REVISION))) {
+            throw new IllegalArgumentException("Revision must be specified to execute " + operation);
+        }
+        String source = exchange.getIn().getHeader(GitConstants.GIT_REVISION, String.class);
+        MergeStrategy strategy = MergeStrategy.get(endpoint.getMergeStrategy());
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown merge strategy " + endpoint.getMergeStrategy());
+        }
+        MergeResult result = null;
+        RevWalk walk = new RevWalk(repo);
+        try {
+            String target = ObjectHelper.isNotEmpty(endpoint.getBranchName()) ? Constants.R_HEADS + shortName(Constants.R_HEADS, endpoint.getBranchName()) : repo.getFullBranch();
+            if (target == null || !target.startsWith(Constants.R_HEADS)) {
+                throw new IllegalArgumentException("A branch must be specified or checked out to execute " + operation);
+            }
+            if (!repo.isBare() && target.equals(repo.getFullBranch())) {
+                throw new IllegalArgumentException("Cannot merge into the checked out branch " + Repository.shortenRefName(target) + " to execute " + operation);
+            }
+            ObjectId targetId = repo.resolve(target);
+            ObjectId sourceId = repo.resolve(source);
+            if (targetId == null || sourceId == null) {
+                throw new IllegalArgumentException("Cannot resolve " + (targetId == null ? target : source) + " to execute " + operation);
+            }
+            RevCommit targetCommit = walk.parseCommit(targetId);
+            RevCommit sourceCommit = walk.parseCommit(sourceId);
+            ObjectId[] merged = {targetCommit, sourceCommit};
+            if (walk.isMergedInto(sourceCommit, targetCommit)) {
+                result = new MergeResult(targetCommit, null, merged, MergeStatus.ALREADY_UP_TO_DATE, strategy, null, null);
+            } else if (walk.isMergedInto(targetCommit, sourceCommit)) {
+                moveBranch(walk, target, targetCommit, sourceCommit, "merge " + source + ": Fast-forward");
+                result = new MergeResult(sourceCommit, null, merged, MergeStatus.FAST_FORWARD, strategy, null, null);
+            } else {
+                Merger merger = strategy.newMerger(repo, true);
+                if (merger.merge(targetCommit, sourceCommit)) {
+                    String message = exchange.getIn().getHeader(GitConstants.GIT_COMMIT_MESSAGE, "Merge " + source + " into " + Repository.shortenRefName(target), String.class);
+                    ObjectId commitId = insertMergeCommit(merger.getResultTreeId(), message, targetCommit, sourceCommit);
+                    moveBranch(walk, target, targetCommit, commitId, "merge " + source + ": Merge made by " + strategy.getName() + ".");
+                    result = new MergeResult(commitId, null, merged, MergeStatus.MERGED, strategy, null, null);
+                } else if (merger instanceof ResolveMerger) {
+                    ResolveMerger resolveMerger = (ResolveMerger) merger;
+                    Map<String, org.eclipse.jgit.merge.MergeResult<?>> lowLevelResults = new HashMap<String, org.eclipse.jgit.merge.MergeResult<?>>(resolveMerger.getMergeResults());
+                    MergeStatus status = resolveMerger.getFailingPaths() != null ? MergeStatus.FAILED : MergeStatus.CONFLICTING;
+                    result = new MergeResult(null, null, merged, status, strategy, lowLevelResults, resolveMerger.getFailingPaths(), null);
+                } else {
+                    result = new MergeResult(null, null, merged, MergeStatus.FAILED, strategy, null, null);
+                }
+            }
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        } finally {
+            walk.close();
+        }
+        exchange.getOut().setBody(result);
+    }
+
+    private ObjectId insertMergeCommit(ObjectId tree, String message, ObjectId... parents) throws IOException {
+        PersonIdent ident = new PersonIdent(repo);
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(tree);
+        commit.setParentIds(parents);
+        commit.setAuthor(ident);
+        commit.setCommitter(ident);
+        commit.setMessage(message);
+        ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            return id;
+        } finally {
+            inserter.close();
+        }
+    }
+
+    private void moveBranch(RevWalk walk, String branch, ObjectId oldId, ObjectId newId, String reflogMessage) throws IOException {
+        RefUpdate update = repo.updateRef(branch);
+        update.setNewObjectId(newId);
+        update.setExpectedOldObjectId(oldId);
+        update.setRefLogMessage(reflogMessage, false);
+        RefUpdate.Result result = update.update(walk);
+        if (result != RefUpdate.Result.FAST_FORWARD) {
+            throw new IllegalStateException("Cannot move " + branch + " to " + newId.name() + ": " + result);
+        }
+    }
+
+    /**
+     * Copies the body to the given file, then inserts the file as a blob, so
+     * the inserter can stream it as it knows its length.
+     */
+    private ObjectId insertBody(Exchange exchange, File file) throws Exception {
+        InputStream in = exchange.getIn().getMandatoryBody(InputStream.class);
+        try {
+            Files.copy(in, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            IOHelper.close(in);
+        }
+        InputStream content = new FileInputStream(file);
+        try {
+            return insertBlob(content, file.length());
+        } finally {
+            IOHelper.close(content);
+        }
+    }
+
+    private ObjectId insertBlob(InputStream content, long length) throws IOException {
+        ObjectInserter inserter = repo.newObjectInserter();
+        try {
+            ObjectId id = inserter.insert(Constants.OBJ_BLOB, length, content);
+            inserter.flush();
+            return id;
+        } finally {
+            inserter.close();
+        }
+    }
+
+    /**
+     * Points the index entry of the path to the given blob, keeping the mode of
+     * an existing entry.
+     */
+    private void stage(String path, final ObjectId blobId, final long length, final long lastModified) throws IOException {
+        DirCache index = repo.lockDirCache();
+        try {
+            DirCacheEditor editor = index.editor();
+            editor.add(new DirCacheEditor.PathEdit(path) {
+                @Override
+                public void apply(DirCacheEntry entry) {
+                    if (!FileMode.EXECUTABLE_FILE.equals(entry.getFileMode())) {
+                        entry.setFileMode(FileMode.REGULAR_FILE);
+                    }
+                    entry.setObjectId(blobId);
+                    entry.setLength(length);
+                    entry.setLastModified(lastModified);
+                }
+            });
+            editor.commit();
+        } finally {
+            index.unlock();
+        }
+    }
+
+    /**
+     * Copies the commits of a log into {@link GitCommit} values as they are
+     * iterated, releasing the raw body of each commit as soon as it is copied.
+     */
+    private Iterable<GitCommit> toCompactCommits(final Iterable<RevCommit> log) {
+        final boolean paths = endpoint.isCompactCommitPaths();
+        return new Iterable<GitCommit>() {
+            @Override
+            public Iterator<GitCommit> iterator() {
+                final Iterator<RevCommit> commits = log.iterator();
+                final RevWalk walk = paths ? new RevWalk(repo) : null;
+                return new Iterator<GitCommit>() {
+                    @Override
+                    public boolean hasNext() {
+                        boolean hasNext = commits.hasNext();
+                        if (!hasNext && walk != null) {
+                            walk.close();
+                        }
+                        return hasNext;
+                    }
+
+                    @Override
+                    public GitCommit next() {
+                        RevCommit commit = commits.next();
+                        try {
+                            return paths ? GitCommit.valueOf(commit, walk) : GitCommit.valueOf(commit);
+                        } catch (IOException e) {
+                            throw new RevWalkException(e);
+                        } finally {
+                            commit.disposeBody();
+                        }
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    private DiffFormatter createDiffFormatter(OutputStream out, List<String> paths, Integer contextLines, Integer renameLimit) {
+        DiffFormatter formatter = new DiffFormatter(out);
+        formatter.setRepository(repo);
+        if (!paths.isEmpty()) {
+            formatter.setPathFilter(PathFilterGroup.createFromStrings(paths));
+        }
+        if (contextLines != null) {
+            formatter.setContext(contextLines);
+        }
+        if (renameLimit != null) {
+            formatter.setDetectRenames(true);
+            formatter.getRenameDetector().setRenameLimit(renameLimit);
+        }
+        return formatter;
+    }
+
+    /**
+     * Runs the writer on the producer thread pool and returns the reading end
+     * of a bounded pipe, so the content is never held in memory or on disk. A
+     * body left unread for the pipe timeout fails the writer, which then
+     * releases the repository.
+     */
+    private InputStream pipe(final String operation, final OutputWriter writer) throws IOException {
+        final FailurePipedInputStream in = new FailurePipedInputStream(PIPE_BUFFER_SIZE);
+        final PipedOutputStream out = new TimedPipedOutputStream(in, endpoint.getPipeTimeout());
+        final CountDownLatch started = new CountDownLatch(1);
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                // the exchange still holds the read lock, so this never waits, even
+                // behind a clone or init, and keeps the repository open until written
+                boolean locked = repositoryLock.readLock().tryLock();
+                started.countDown();
+                try {
+                    writer.write(out);
+                } catch (Throwable e) {
+                    LOG.error("There was an error in Git " + operation + " operation");
+                    in.setFailure(e);
+                } finally {
+                    IOHelper.close(out);
+                    if (locked) {
+                        repositoryLock.readLock().unlock();
+                    }
+                }
+            }
+        });
+        try {
+            started.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return in;
+    }
+
+    private synchronized GitStatusScanner getStatusScanner() {
+        if (statusScanner == null) {
+            statusScanner = new GitStatusScanner(repo, endpoint.isStatusUntracked());
+        }
+        return statusScanner;
+    }
+
+    /**
+     * The file names of the header: a single path, which may contain commas, or
+     * the elements of a collection or object array.
+     */
+    private List<String> getFileNames(Exchange exchange) {
+        List<String> fileNames = new ArrayList<String>();
+        Object header = exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME);
+        if (ObjectHelper.isEmpty(header)) {
+            return fileNames;
+        }
+        List<String> names = toNames(header);
+        if (names != null) {
+            fileNames.addAll(names);
+        } else {
+            fileNames.add(exchange.getIn().getHeader(GitConstants.GIT_FILE_NAME, String.class));
+        }
+        return fileNames;
+    }
+
+    /**
+     * The file names of the header or, if there is none, the elements of a
+     * collection or array body.
+     */
+    private List<String> getFileNamesOrBody(Exchange exchange) {
+        List<String> fileNames = getFileNames(exchange);
+        if (fileNames.isEmpty()) {
+            List<String> names = getBodyNames(exchange);
+            if (names != null) {
+                fileNames.addAll(names);
+            }
+        }
+        return fileNames;
+    }
+
+    /**
+     * The elements of a collection or object array body, or null if the body is
+     * not one. Primitive arrays, such as the byte[] of a file, are content and
+     * never names.
+     */
+    private List<String> getBodyNames(Exchange exchange) {
+        return toNames(exchange.getIn().getBody());
+    }
+
+    private static List<String> toNames(Object value) {
+        Iterable<?> elements;
+        if (value instanceof Iterable) {
+            elements = (Iterable<?>) value;
+        } else if (value instanceof Object[]) {
+            elements = Arrays.asList((Object[]) value);
+        } else {
+            return null;
+        }
+        List<String> names = new ArrayList<String>();
+        for (Object element : elements) {
+            names.add(element.toString());
+        }
+        return names;
+    }
+
+    private static boolean isBatch(Exchange exchange) {
+        return exchange.getIn().getHeader(GitConstants.GIT_BATCH, false, Boolean.class);
+    }
+
+    /**
+     * The refs to create for a batch body: a map of names to target revisions,
+     * or a collection of names all pointing to the revision header, or HEAD if
+     * there is none.
+     */
+    private Map<String, String> getBatchTargets(Exchange exchange, String operation) {
+        Object body = exchange.getIn().getBody();
+        String revision = exchange.getIn().getHeader(GitConstants.GIT_REVISION, Constants.HEAD, String.class);
+        Map<String, String> targets = new LinkedHashMap<String, String>();
+        if (body instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) body).entrySet()) {
+                Object target = entry.getValue();
+                targets.put(entry.getKey().toString(), target != null ? target.toString() : revision);
+            }
+        } else {
+            for (String name : getBatchNames(exchange, operation)) {
+                targets.put(name, revision);
+            }
+        }
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("The batch must not be empty to execute " + operation);
+        }
+        return targets;
+    }
+
+    /**
+     * The ref names of a collection or object array batch body.
+     */
+    private List<String> getBatchNames(Exchange exchange, String operation) {
+        List<String> names = getBodyNames(exchange);
+        if (names == null) {
+            throw new IllegalArgumentException("The body must be a collection or an array of names to execute a batch " + operation);
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("The batch must not be empty to execute " + operation);
+        }
+        return names;
+    }
+
+    private String getRevision(Exchange exchange) {
+        if (ObjectHelper.isNotEmpty(exchange.getIn().getHeader(GitConstants.GIT_REVISION))) {
+            return exchange.getIn().getHeader(GitConstants.GIT_REVISION, String.class);
+        } else if (ObjectHelper.isNotEmpty(endpoint.getBranchName())) {
+            return endpoint.getBranchName();
+        }
+        return Constants.HEAD;
+    }
+
+    /**
+     * Fetches the branches and tags of the remote path into the in memory
+     * repository.
+     */
+    private void doCloneInMemory(String operation) throws Exception {
+        try {
+            FetchCommand fetch = git.fetch().setRemote(endpoint.getRemotePath())
+                    .setRefSpecs(new RefSpec("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*"), new RefSpec("+" + Constants.R_TAGS + "*:" + Constants.R_TAGS + "*"));
+            if (ObjectHelper.isNotEmpty(endpoint.getUsername()) && ObjectHelper.isNotEmpty(endpoint.getPassword())) {
+                fetch.setCredentialsProvider(new UsernamePasswordCredentialsProvider(endpoint.getUsername(), endpoint.getPassword()));
+            }
+            fetch.call();
+        } catch (Exception e) {
+            LOG.error("There was an error in Git " + operation + " operation");
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the big file threshold of the endpoint to the packs written by
+     * the transport, or null if the repository configuration applies.
+     */
+    private TransportConfigCallback getTransportConfig() {
+        if (endpoint.getBigFileThreshold() <= 0) {
+            return null;
+        }
+        return new TransportConfigCallback() {
+            @Override
+            public void configure(Transport transport) {
+                PackConfig config = new PackConfig(repo);
+                config.setBigFileThreshold(endpoint.getBigFileThreshold());
+                transport.setPackConfig(config);
+            }
+        };
+    }
+
+    private void requireWorkTree(String operation) {
+        if (endpoint.isInMemory()) {
+            throw new IllegalArgumentException("An in memory repository has no working tree to execute " + operation);
+        }
+    }
+
+    private static boolean isCreateOperation(String operation) {
+        return GitOperation.CLONE_OPERATION.equals(operation) || GitOperation.INIT_OPERATION.equals(operation);
+    }
+
+    private synchronized void openRepository() throws IOException {
+        if (repo == null) {
+            Repository repository = endpoint.isInMemory() ? endpoint.getInMemoryRepository().getRepository() : getLocalRepository();
+            if (endpoint.isWarmUp()) {
+                endpoint.warmUp(repository);
+            }
+            this.git = new Git(repository);
+            this.repo = repository;
+        }
+    }
+
+    private synchronized void closeRepository() {
+        if (statusScanner != null) {
+            statusScanner.close();
+            statusScanner = null;
+        }
+        if (repo != null) {
+            // an in memory repository is shared, the component releases it
+            if (!endpoint.isInMemory()) {
+                repo.close();
+                git.close();
+            }
+            repo = null;
+            git = null;
+        }
+    }
+
     private Repository getLocalRepository() throws IOException {
         FileRepositoryBuilder builder = new FileRepositoryBuilder();
         Repository repo = null;
@@ -379,4 +1563,170 @@ public class GitProducer extends DefaultProducer {
         }
         return repo;
     }
+
+    private static final class CachedLog {
+
+        private final Iterable<?> commits;
+
+        private final long created;
+
+        CachedLog(Iterable<?> commits, long created) {
+            this.commits = commits;
+            this.created = created;
+        }
+    }
+
+    /**
+     * The commits of a cached log, parsed one at a time when read so that no
+     * walk, and no commit graph, is kept between the reads.
+     */
+    private static final class CommitIdList extends AbstractList<RevCommit> {
+
+        private final Repository repository;
+
+        private final List<ObjectId> ids;
+
+        CommitIdList(Repository repository, List<ObjectId> ids) {
+            this.repository = repository;
+            this.ids = ids;
+        }
+
+        @Override
+        public RevCommit get(int index) {
+            RevWalk walk = new RevWalk(repository);
+            try {
+                return walk.parseCommit(ids.get(index));
+            } catch (IOException e) {
+                throw new RevWalkException(e);
+            } finally {
+                walk.close();
+            }
+        }
+
+        @Override
+        public int size() {
+            return ids.size();
+        }
+    }
+
+    private interface OutputWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    /**
+     * A pipe which reports a failure of the writing side to the reader
+     * instead of a silently truncated stream.
+     */
+    private static final class FailurePipedInputStream extends PipedInputStream {
+
+        private volatile Throwable failure;
+
+        FailurePipedInputStream(int pipeSize) {
+            super(pipeSize);
+        }
+
+        void setFailure(Throwable failure) {
+            this.failure = failure;
+        }
+
+        /**
+         * Waits until the pipe has room for more content, for at most the given
+         * time, zero waiting forever, and returns the number of bytes that can be
+         * written without blocking, zero if the reader did not make any room.
+         */
+        synchronized int awaitSpace(long timeout) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeout;
+            while (in == out) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (timeout > 0 && remaining <= 0) {
+                    return 0;
+                }
+                wait(timeout > 0 ? remaining : 0);
+            }
+            if (in < 0) {
+                return buffer.length;
+            }
+            return in > out ? buffer.length - (in - out) : out - in;
+        }
+
+        @Override
+        public synchronized int read() throws IOException {
+            int b = super.read();
+            if (b < 0) {
+                checkFailure();
+            }
+            notifyAll();
+            return b;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n < 0) {
+                checkFailure();
+            }
+            notifyAll();
+            return n;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            super.close();
+            notifyAll();
+        }
+
+        private void checkFailure() throws IOException {
+            if (failure != null) {
+                throw new IOException("The stream could not be written completely", failure);
+            }
+        }
+    }
+
+    /**
+     * The writing end of a {@link FailurePipedInputStream}, which fails rather
+     * than blocking forever when the reader stops reading, so the writer thread
+     * and the repository it holds are released.
+     */
+    private static final class TimedPipedOutputStream extends PipedOutputStream {
+
+        private final FailurePipedInputStream sink;
+
+        private final long timeout;
+
+        TimedPipedOutputStream(FailurePipedInputStream sink, long timeout) throws IOException {
+            super(sink);
+            this.sink = sink;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            awaitSpace();
+            super.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(awaitSpace(), len);
+                super.write(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        private int awaitSpace() throws IOException {
+            int space;
+            try {
+                space = sink.awaitSpace(timeout);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the stream to be read");
+            }
+            if (space == 0) {
+                throw new IOException("The stream was not read for " + timeout + " millis");
+            }
+            return space;
+        }
+    }
 }
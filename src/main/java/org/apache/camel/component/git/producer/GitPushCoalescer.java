@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git.producer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+
+import org.eclipse.jgit.transport.PushResult;
+
+/**
+ * Collapses the pushes requested for the same key within a time window into a
+ * single push.
+ * <p/>
+ * The first request of a key waits for the window, then pushes on behalf of
+ * every request received in the meantime, which all return the same result.
+ * A request arriving once the push has started waits for the next one, so the
+ * commits made before a request are always part of the push answering it.
+ * The pushes of a key are serialized: the next one starts once the previous
+ * one completed.
+ */
+public class GitPushCoalescer {
+
+    private final long window;
+
+    private final Map<String, PendingPush> pending = new HashMap<String, PendingPush>();
+
+    // the lock of each key with a push waiting or running, removed after the last
+    private final Map<String, KeyLock> locks = new HashMap<String, KeyLock>();
+
+    public GitPushCoalescer(long window) {
+        this.window = window;
+    }
+
+    public Iterable<PushResult> push(String key, Callable<Iterable<PushResult>> push) throws Exception {
+        PendingPush batch;
+        boolean first;
+        KeyLock lock = null;
+        synchronized (pending) {
+            batch = pending.get(key);
+            first = batch == null;
+            if (first) {
+                batch = new PendingPush();
+                pending.put(key, batch);
+                lock = locks.get(key);
+                if (lock == null) {
+                    lock = new KeyLock();
+                    locks.put(key, lock);
+                }
+                lock.users++;
+            }
+        }
+        if (first) {
+            try {
+                Thread.sleep(window);
+            } catch (InterruptedException e) {
+                // push right away, the other requests are waiting for it
+                Thread.currentThread().interrupt();
+            }
+            // held across the push, the batch keeps collecting requests meanwhile
+            try {
+                synchronized (lock) {
+                    synchronized (pending) {
+                        pending.remove(key);
+                    }
+                    batch.run(push);
+                }
+            } finally {
+                synchronized (pending) {
+                    if (--lock.users == 0) {
+                        locks.remove(key);
+                    }
+                }
+            }
+        }
+        return batch.await();
+    }
+
+    /**
+     * The number of keys with a push waiting or running
+     */
+    public int getLockCount() {
+        synchronized (pending) {
+            return locks.size();
+        }
+    }
+
+    private static final class KeyLock {
+
+        // guarded by the pending map
+        private int users;
+    }
+
+    private static final class PendingPush {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Iterable<PushResult> result;
+
+        private Exception failure;
+
+        void run(Callable<Iterable<PushResult>> push) {
+            try {
+                result = push.call();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        Iterable<PushResult> await() throws Exception {
+            done.await();
+            if (failure != null) {
+                throw failure;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.camel.component.git.producer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.IndexDiff.StageState;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the {@link Status} of a working tree.
+ * <p/>
+ * Used as an instance it keeps the last result and a filesystem watcher on the
+ * working tree, so each call only re-examines the paths changed since the
+ * previous one. Only the top of the git directory is watched, for the index
+ * and HEAD, and a moved HEAD is detected by resolving it. Any of those
+ * changes, a change to an ignore file, a lost watch event or a directory which
+ * cannot be watched falls back to a full scan.
+ */
+public class GitStatusScanner implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GitStatusScanner.class);
+
+    private final Repository repo;
+
+    private final boolean untracked;
+
+    private final Path workTree;
+
+    private final Path gitDir;
+
+    private WatchService watchService;
+
+    private SnapshotIndexDiff snapshot;
+
+    private ObjectId head;
+
+    private int rescans;
+
+    public GitStatusScanner(Repository repo, boolean untracked) {
+        this.repo = repo;
+        this.untracked = untracked;
+        this.workTree = repo.getWorkTree().toPath().toAbsolutePath().normalize();
+        this.gitDir = repo.getDirectory().toPath().toAbsolutePath().normalize();
+        try {
+            this.watchService = workTree.getFileSystem().newWatchService();
+            register(workTree);
+        } catch (IOException e) {
+            LOG.warn("Cannot watch " + workTree + ", every status will scan the whole working tree", e);
+            close();
+        }
+    }
+
+    /**
+     * Computes the status of the given paths, or of the whole working tree if
+     * no path is given, without any caching.
+     */
+    public static Status scan(Repository repo, Collection<String> paths, boolean untracked) throws IOException {
+        return new Status(diff(repo, paths, untracked));
+    }
+
+    /**
+     * Returns the status of the whole working tree, re-examining only the paths
+     * changed since the previous call.
+     */
+    public synchronized Status status() throws IOException {
+        Set<String> changed = new HashSet<String>();
+        ObjectId currentHead = repo.resolve(Constants.HEAD);
+        boolean rescan = poll(changed) || snapshot == null || watchService == null;
+        if (currentHead == null ? head != null : !currentHead.equals(head)) {
+            rescan = true;
+        }
+        head = currentHead;
+        if (rescan) {
+            snapshot = new SnapshotIndexDiff(repo, diff(repo, null, untracked));
+            rescans++;
+        } else if (!changed.isEmpty()) {
+            snapshot.merge(diff(repo, changed, untracked), changed);
+        }
+        return new Status(new SnapshotIndexDiff(repo, snapshot));
+    }
+
+    /**
+     * The number of full scans done so far
+     */
+    public synchronized int getRescans() {
+        return rescans;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing the watch service of " + workTree, e);
+            }
+            watchService = null;
+        }
+        snapshot = null;
+    }
+
+    private static IndexDiff diff(Repository repo, Collection<String> paths, boolean untracked) throws IOException {
+        IndexDiff diff = new IndexDiff(repo, Constants.HEAD, new FileTreeIterator(repo));
+        TreeFilter filter = null;
+        if (paths != null && !paths.isEmpty()) {
+            filter = PathFilterGroup.createFromStrings(paths);
+        }
+        if (!untracked) {
+            filter = filter == null ? TrackedFilter.INSTANCE : AndTreeFilter.create(filter, TrackedFilter.INSTANCE);
+        }
+        if (filter != null) {
+            diff.setFilter(filter);
+        }
+        diff.diff();
+        return diff;
+    }
+
+    /**
+     * Collects the working tree paths reported by the watcher, returning true
+     * if a full scan is required instead.
+     */
+    private boolean poll(Set<String> changed) {
+        if (watchService == null) {
+            return true;
+        }
+        boolean rescan = false;
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            Path dir = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    rescan = true;
+                    continue;
+                }
+                Path child = dir.resolve((Path) event.context());
+                if (child.startsWith(gitDir) || child.getFileName().toString().equals(Constants.DOT_GIT_IGNORE)) {
+                    rescan = true;
+                    continue;
+                }
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+                    try {
+                        register(child);
+                    } catch (IOException e) {
+                        // deleted meanwhile or not readable, its content is unknown
+                        LOG.debug("Cannot watch " + child + ", the next status scans the whole working tree", e);
+                        rescan = true;
+                    }
+                }
+                changed.add(workTree.relativize(child).toString().replace(File.separatorChar, '/'));
+            }
+            key.reset();
+        }
+        return rescan;
+    }
+
+    private void register(Path start) throws IOException {
+        Files.walkFileTree(start, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                // the index and HEAD are at the top of the git directory, refs are resolved
+                return dir.equals(gitDir) ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Excludes paths that are neither in HEAD nor in the index, so untracked
+     * directories are never walked.
+     */
+    private static final class TrackedFilter extends TreeFilter {
+
+        private static final TrackedFilter INSTANCE = new TrackedFilter();
+
+        // tree positions used by IndexDiff
+        private static final int TREE = 0;
+        private static final int INDEX = 1;
+
+        @Override
+        public boolean include(TreeWalk walker) {
+            return walker.getRawMode(TREE) != 0 || walker.getRawMode(INDEX) != 0;
+        }
+
+        @Override
+        public boolean shouldBeRecursive() {
+            return false;
+        }
+
+        @Override
+        public TreeFilter clone() {
+            return this;
+        }
+    }
+
+    /**
+     * A mutable copy of a computed {@link IndexDiff}, used as the cached result.
+     */
+    private static final class SnapshotIndexDiff extends IndexDiff {
+
+        private final Set<String> added;
+        private final Set<String> changed;
+        private final Set<String> removed;
+        private final Set<String> missing;
+        private final Set<String> modified;
+        private final Set<String> untracked;
+        private final Set<String> untrackedFolders;
+        private final Set<String> conflicting;
+        private final Set<String> ignoredNotInIndex;
+        private final Set<String> assumeUnchanged;
+        private final Map<String, StageState> conflictingStageStates;
+
+        SnapshotIndexDiff(Repository repo, IndexDiff diff) throws IOException {
+            super(repo, (ObjectId) null, null);
+            added = new HashSet<String>(diff.getAdded());
+            changed = new HashSet<String>(diff.getChanged());
+            removed = new HashSet<String>(diff.getRemoved());
+            missing = new HashSet<String>(diff.getMissing());
+            modified = new HashSet<String>(diff.getModified());
+            untracked = new HashSet<String>(diff.getUntracked());
+            untrackedFolders = new HashSet<String>(diff.getUntrackedFolders());
+            conflicting = new HashSet<String>(diff.getConflicting());
+            ignoredNotInIndex = new HashSet<String>(diff.getIgnoredNotInIndex());
+            assumeUnchanged = new HashSet<String>(diff.getAssumeUnchanged());
+            conflictingStageStates = new HashMap<String, StageState>(diff.getConflictingStageStates());
+        }
+
+        /**
+         * Replaces everything known about the given paths with the result of
+         * re-examining them.
+         */
+        void merge(IndexDiff diff, Set<String> paths) {
+            for (Set<String> set : allSets()) {
+                removeUnder(set, paths);
+            }
+            removeUnder(conflictingStageStates.keySet(), paths);
+            // an untracked folder is affected by any change below it
+            for (Iterator<String> it = untrackedFolders.iterator(); it.hasNext();) {
+                String folder = it.next() + "/";
+                for (String path : paths) {
+                    if (path.startsWith(folder)) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+            added.addAll(diff.getAdded());
+            changed.addAll(diff.getChanged());
+            removed.addAll(diff.getRemoved());
+            missing.addAll(diff.getMissing());
+            modified.addAll(diff.getModified());
+            untracked.addAll(diff.getUntracked());
+            untrackedFolders.addAll(diff.getUntrackedFolders());
+            conflicting.addAll(diff.getConflicting());
+            ignoredNotInIndex.addAll(diff.getIgnoredNotInIndex());
+            assumeUnchanged.addAll(diff.getAssumeUnchanged());
+            conflictingStageStates.putAll(diff.getConflictingStageStates());
+        }
+
+        private List<Set<String>> allSets() {
+            return Arrays.asList(added, changed, removed, missing, modified, untracked, untrackedFolders,
+                    conflicting, ignoredNotInIndex, assumeUnchanged);
+        }
+
+        private static void removeUnder(Set<String> set, Set<String> paths) {
+            for (Iterator<String> it = set.iterator(); it.hasNext();) {
+                String entry = it.next();
+                for (String path : paths) {
+                    if (entry.equals(path) || entry.startsWith(path + "/")) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Set<String> getAdded() {
+            return added;
+        }
+
+        @Override
+        public Set<String> getChanged() {
+            return changed;
+        }
+
+        @Override
+        public Set<String> getRemoved() {
+            return removed;
+        }
+
+        @Override
+        public Set<String> getMissing() {
+            return missing;
+        }
+
+        @Override
+        public Set<String> getModified() {
+            return modified;
+        }
+
+        @Override
+        public Set<String> getUntracked() {
+            return untracked;
+        }
+
+        @Override
+        public Set<String> getUntrackedFolders() {
+            return untrackedFolders;
+        }
+
+        @Override
+        public Set<String> getConflicting() {
+            return conflicting;
+        }
+
+        @Override
+        public Map<String, StageState> getConflictingStageStates() {
+            return conflictingStageStates;
+        }
+
+        @Override
+        public Set<String> getIgnoredNotInIndex() {
+            return ignoredNotInIndex;
+        }
+
+        @Override
+        public Set<String> getAssumeUnchanged() {
+            return assumeUnchanged;
+        }
+    }
+}
@@ -17,16 +17,19 @@
 package org.apache.camel.component.git.consumer;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.git.GitCommit;
 import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitTestSupport;
 import org.apache.camel.component.mock.MockEndpoint;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -105,6 +108,276 @@ public class GitConsumerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void commitConsumerStartFromNowTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() throws Exception {
+                from("git://" + gitLocalRepo + "?type=commit&startFrom=now")
+                        .to("mock:result-commit-now");
+            }
+        });
+        MockEndpoint added = getMockEndpoint("mock:result-commit-now");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 0);
+        
+        File fileToAdd1 = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAdd1.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, "Test test Commit");
+            }
+        });
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        assertEquals("Test test Commit", added.getExchanges().get(0).getOut().getBody(RevCommit.class).getShortMessage());
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerIncludePathsTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        MockEndpoint added = getMockEndpoint("mock:result-commit-path");
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        File fileToAdd1 = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAdd1.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, "Test test Commit");
+            }
+        });
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        assertEquals("Test test Commit", added.getExchanges().get(0).getOut().getBody(RevCommit.class).getShortMessage());
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerExcludePathsTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        MockEndpoint added = getMockEndpoint("mock:result-commit-exclude");
+        
+        File generated = new File(gitLocalRepo, "config/generated/" + filenameToAdd);
+        generated.getParentFile().mkdirs();
+        generated.createNewFile();
+        
+        template.sendBodyAndHeader("direct:add", "", GitConstants.GIT_FILE_NAME, "config/generated/" + filenameToAdd);
+        template.sendBodyAndHeader("direct:commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+        
+        new File(gitLocalRepo, "config/" + filenameBranchToAdd).createNewFile();
+        
+        template.sendBodyAndHeader("direct:add", "", GitConstants.GIT_FILE_NAME, "config/" + filenameBranchToAdd);
+        template.sendBodyAndHeader("direct:commit", "", GitConstants.GIT_COMMIT_MESSAGE, "Test test Commit");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        assertEquals("Test test Commit", added.getExchanges().get(0).getOut().getBody(RevCommit.class).getShortMessage());
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerFetchRemoteTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        final File remoteRepo = new File("testRemoteRepo");
+        Git remote = Git.init().setDirectory(remoteRepo).setBare(false).call();
+        try {
+            new File(remoteRepo, filenameToAdd).createNewFile();
+            remote.add().addFilepattern(filenameToAdd).call();
+            remote.commit().setMessage(commitMessage).call();
+            
+            context.addRoutes(new RouteBuilder() {
+                @Override
+                public void configure() throws Exception {
+                    from("git://" + gitLocalRepo + "?type=commit&fetchRemote=true&remotePath=" + remoteRepo.getAbsolutePath())
+                            .to("mock:result-commit-remote");
+                }
+            });
+            MockEndpoint added = getMockEndpoint("mock:result-commit-remote");
+            
+            Thread.sleep(1 * 5000);
+            assertEquals(added.getExchanges().size(), 1);
+            assertEquals(commitMessage, added.getExchanges().get(0).getOut().getBody(RevCommit.class).getShortMessage());
+            assertNotNull(repository.getRef("refs/remotes/" + AbstractGitConsumer.getTrackingName(remoteRepo.getAbsolutePath()) + "/master"));
+            assertNull(repository.getRef("refs/remotes/origin/master"));
+        } finally {
+            remote.close();
+            deleteDirectory(remoteRepo);
+        }
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerThreadsTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        MockEndpoint added = getMockEndpoint("mock:result-commit-threads");
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        assertEquals("refs/heads/master", added.getExchanges().get(0).getOut().getHeader(GitConstants.GIT_REF_NAME));
+        
+        Git git = new Git(repository);
+        git.checkout().setCreateBranch(true).setName(branchTest).call();
+        File fileToAdd1 = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAdd1.createNewFile();
+        git.add().addFilepattern(filenameBranchToAdd).call();
+        git.commit().setMessage(commitMessageBranch).call();
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 2);
+        Exchange branch = added.getExchanges().get(1);
+        assertEquals("refs/heads/" + branchTest, branch.getOut().getHeader(GitConstants.GIT_REF_NAME));
+        assertEquals(commitMessageBranch, branch.getOut().getBody(RevCommit.class).getShortMessage());
+        
+        // a commit made on a branch merged into another one is reported with that branch
+        git.checkout().setCreateBranch(true).setName("zfeature").call();
+        new File(gitLocalRepo, "feature.txt").createNewFile();
+        git.add().addFilepattern("feature.txt").call();
+        RevCommit feature = git.commit().setMessage("feature").call();
+        git.checkout().setName(branchTest).call();
+        new File(gitLocalRepo, "other.txt").createNewFile();
+        git.add().addFilepattern("other.txt").call();
+        git.commit().setMessage("other").call();
+        git.merge().include(feature).call();
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 5);
+        for (Exchange exchange : added.getExchanges().subList(2, 5)) {
+            String refName = exchange.getOut().getHeader(GitConstants.GIT_REF_NAME, String.class);
+            if (feature.equals(exchange.getOut().getBody(RevCommit.class))) {
+                assertEquals("refs/heads/zfeature", refName);
+            } else {
+                assertEquals("refs/heads/" + branchTest, refName);
+            }
+        }
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerCompactTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        MockEndpoint added = getMockEndpoint("mock:result-commit-compact");
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        GitCommit commit = added.getExchanges().get(0).getOut().getBody(GitCommit.class);
+        assertEquals(commitMessage, commit.getShortMessage());
+        assertEquals(repository.resolve(Constants.HEAD).name(), commit.getId());
+        assertTrue(commit.getParentIds().isEmpty());
+        assertEquals(Collections.singletonList(filenameToAdd), commit.getChangedPaths());
+        repository.close();
+    }
+    
+    @Test
+    public void commitConsumerInMemoryTest() throws Exception {
+        MockEndpoint added = getMockEndpoint("mock:result-commit-memory");
+        
+        template.requestBodyAndHeader("direct:memory-write", commitMessage, GitConstants.GIT_FILE_NAME, filenameToAdd);
+        template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        assertEquals(commitMessage, added.getExchanges().get(0).getOut().getBody(RevCommit.class).getShortMessage());
+        assertFalse(new File(gitLocalRepo).exists());
+    }
+    
     @Test
     public void tagConsumerTest() throws Exception {
 
@@ -152,6 +425,48 @@ public class GitConsumerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void tagEventsConsumerTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        template.sendBody("direct:create-tag", "");
+        
+        MockEndpoint added = getMockEndpoint("mock:result-tag");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        
+        template.sendBody("direct:delete-tag", "");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 2);
+        Exchange created = added.getExchanges().get(0);
+        Exchange deleted = added.getExchanges().get(1);
+        assertEquals("CREATED", created.getOut().getHeader(GitConstants.GIT_REF_EVENT));
+        assertEquals("DELETED", deleted.getOut().getHeader(GitConstants.GIT_REF_EVENT));
+        assertEquals("refs/tags/" + tagTest, deleted.getOut().getHeader(GitConstants.GIT_REF_NAME));
+        assertEquals(created.getOut().getHeader(GitConstants.GIT_NEW_OBJECT_ID), deleted.getOut().getHeader(GitConstants.GIT_OLD_OBJECT_ID));
+        repository.close();
+    }
+    
     @Test
     public void branchConsumerTest() throws Exception {
 
@@ -199,6 +514,107 @@ public class GitConsumerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void branchUpdateConsumerTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        MockEndpoint added = getMockEndpoint("mock:result-branch");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 1);
+        
+        File fileToAdd1 = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAdd1.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, "Test test Commit");
+            }
+        });
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 2);
+        Exchange updated = added.getExchanges().get(1);
+        assertEquals("UPDATED", updated.getOut().getHeader(GitConstants.GIT_REF_EVENT));
+        assertEquals("FAST_FORWARD", updated.getOut().getHeader(GitConstants.GIT_UPDATE_TYPE));
+        assertEquals("refs/heads/master", updated.getOut().getHeader(GitConstants.GIT_REF_NAME));
+        repository.close();
+    }
+    
+    @Test
+    public void refConsumerTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        template.sendBody("direct:create-tag", "");
+        
+        MockEndpoint added = getMockEndpoint("mock:result-ref");
+        
+        Thread.sleep(1 * 5000);
+        assertEquals(added.getExchanges().size(), 3);
+        int commits = 0;
+        int branches = 0;
+        int tags = 0;
+        for (Exchange exchange : added.getExchanges()) {
+            String type = exchange.getOut().getHeader(GitConstants.GIT_TYPE, String.class);
+            if ("COMMIT".equals(type)) {
+                assertEquals(commitMessage, exchange.getOut().getBody(RevCommit.class).getShortMessage());
+                commits++;
+            } else if ("BRANCH".equals(type)) {
+                branches++;
+            } else if ("TAG".equals(type)) {
+                tags++;
+            }
+        }
+        assertEquals(1, commits);
+        assertEquals(1, branches);
+        assertEquals(1, tags);
+        repository.close();
+    }
+    
     @Override
     protected RouteBuilder createRouteBuilder() throws Exception {
         return new RouteBuilder() {            
@@ -216,12 +632,30 @@ public class GitConsumerTest extends GitTestSupport {
                         .to("git://" + gitLocalRepo + "?operation=createBranch&branchName=" + branchTest);
                 from("direct:create-tag")
                         .to("git://" + gitLocalRepo + "?operation=createTag&tagName=" + tagTest);
+                from("direct:delete-tag")
+                        .to("git://" + gitLocalRepo + "?operation=deleteTag&tagName=" + tagTest);
                 from("git://" + gitLocalRepo + "?type=commit")
                         .to("mock:result-commit");
+                from("git://" + gitLocalRepo + "?type=commit&includePaths=" + filenameBranchToAdd)
+                        .to("mock:result-commit-path");
+                from("git://" + gitLocalRepo + "?type=commit&excludePaths=config/generated")
+                        .to("mock:result-commit-exclude");
+                from("git://" + gitLocalRepo + "?type=commit&threads=2")
+                        .to("mock:result-commit-threads");
+                from("git://" + gitLocalRepo + "?type=commit&compactCommits=true&compactCommitPaths=true")
+                        .to("mock:result-commit-compact");
+                from("direct:memory-write")
+                        .to("git://" + gitLocalRepo + "?operation=write&inMemory=true");
+                from("direct:memory-commit")
+                        .to("git://" + gitLocalRepo + "?operation=commit&inMemory=true");
+                from("git://" + gitLocalRepo + "?type=commit&inMemory=true")
+                        .to("mock:result-commit-memory");
                 from("git://" + gitLocalRepo + "?type=tag")
                         .to("mock:result-tag");
                 from("git://" + gitLocalRepo + "?type=branch")
                         .to("mock:result-branch");
+                from("git://" + gitLocalRepo + "?type=ref")
+                        .to("mock:result-ref");
             } 
         };
     }
@@ -16,20 +16,51 @@
  */
 package org.apache.camel.component.git.producer;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
+import org.apache.camel.CamelExecutionException;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.git.GitCommit;
+import org.apache.camel.component.git.GitComponent;
 import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitTestSupport;
+import org.apache.camel.converter.IOConverter;
 import org.eclipse.jgit.api.CreateBranchCommand.SetupUpstreamMode;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeResult;
+import org.eclipse.jgit.api.MergeResult.MergeStatus;
 import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.junit.Test;
 
 public class GitProducerTest extends GitTestSupport {
@@ -41,6 +72,50 @@ public class GitProducerTest extends GitTestSupport {
         assertEquals(gitDir.exists(), true);
     }
     
+    @Test
+    public void localCloneTest() throws Exception {
+        final File sourceRepo = new File("testRemoteRepo");
+        Git source = Git.init().setDirectory(sourceRepo).setBare(false).call();
+        try {
+            Files.write(new File(sourceRepo, filenameToAdd).toPath(), commitMessage.getBytes());
+            source.add().addFilepattern(filenameToAdd).call();
+            source.commit().setMessage(commitMessage).call();
+            source.tag().setName(tagTest).call();
+            ObjectId head = source.getRepository().resolve(Constants.HEAD);
+            
+            context.addRoutes(new RouteBuilder() {
+                @Override
+                public void configure() throws Exception {
+                    from("direct:clone-shared")
+                            .to("git://" + gitLocalRepo + "?operation=clone&cloneMode=shared&remotePath=" + sourceRepo.getAbsolutePath());
+                    from("direct:clone-hardlink")
+                            .to("git://" + gitLocalRepo + "?operation=clone&cloneMode=hardlink&remotePath=file://" + sourceRepo.getAbsolutePath());
+                }
+            });
+            
+            template.sendBody("direct:clone-shared", "");
+            assertTrue(new File(gitLocalRepo, ".git/objects/info/alternates").exists());
+            Repository repository = getTestRepository();
+            assertEquals(head, repository.resolve(Constants.HEAD));
+            assertEquals(head, repository.resolve("refs/remotes/origin/master"));
+            assertNotNull(repository.resolve("refs/tags/" + tagTest));
+            assertEquals(commitMessage, new String(Files.readAllBytes(new File(gitLocalRepo, filenameToAdd).toPath())));
+            assertTrue(new Git(repository).status().call().isClean());
+            repository.close();
+            
+            deleteDirectory(gitLocalRepo);
+            template.sendBody("direct:clone-hardlink", "");
+            assertFalse(new File(gitLocalRepo, ".git/objects/info/alternates").exists());
+            repository = getTestRepository();
+            assertEquals(head, repository.resolve(Constants.HEAD));
+            assertTrue(new Git(repository).status().call().isClean());
+            repository.close();
+        } finally {
+            source.close();
+            deleteDirectory(sourceRepo);
+        }
+    }
+    
     @Test
     public void initTest() throws Exception {
         template.sendBody("direct:init", "");
@@ -48,6 +123,23 @@ public class GitProducerTest extends GitTestSupport {
         assertEquals(gitDir.exists(), true);
     }
     
+    @Test
+    public void initThenAddTest() throws Exception {
+        template.sendBodyAndHeader("direct:git", "", GitConstants.GIT_OPERATION, "init");
+        File gitDir = new File(gitLocalRepo, ".git");
+        assertEquals(gitDir.exists(), true);
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        Map<String, Object> headers = new HashMap<String, Object>();
+        headers.put(GitConstants.GIT_OPERATION, "add");
+        headers.put(GitConstants.GIT_FILE_NAME, filenameToAdd);
+        template.sendBodyAndHeaders("direct:git", "", headers);
+        
+        Status status = template.requestBodyAndHeader("direct:git", "", GitConstants.GIT_OPERATION, "status", Status.class);
+        assertTrue(status.getAdded().contains(filenameToAdd));
+    }
+    
     @Test
     public void addTest() throws Exception {
 
@@ -70,6 +162,40 @@ public class GitProducerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void addRemoveBatchTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        final List<String> fileNames = Arrays.asList("batch1.txt", "batch2.txt", "batch3.txt");
+        for (String fileName : fileNames) {
+            new File(gitLocalRepo, fileName).createNewFile();
+        }
+        
+        template.sendBody("direct:add", fileNames);
+        
+        Status status = new Git(repository).status().call();
+        assertTrue(status.getAdded().containsAll(fileNames));
+        
+        template.send("direct:remove", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, fileNames.subList(0, 2));
+            }
+        });
+        
+        status = new Git(repository).status().call();
+        assertEquals(Collections.singleton("batch3.txt"), status.getAdded());
+        
+        // a file name header is a single path and a byte[] body is not a list of names
+        new File(gitLocalRepo, "batch,4.txt").createNewFile();
+        template.sendBodyAndHeader("direct:add", "content".getBytes(), GitConstants.GIT_FILE_NAME, "batch,4.txt");
+        
+        status = new Git(repository).status().call();
+        assertEquals(new HashSet<String>(Arrays.asList("batch3.txt", "batch,4.txt")), status.getAdded());
+        repository.close();
+    }
+    
     @Test
     public void removeTest() throws Exception {
 
@@ -580,6 +706,72 @@ public class GitProducerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void statusPathTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        File fileToAddDifferent = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAddDifferent.createNewFile();
+        
+        Status status = template.requestBodyAndHeader("direct:status", "", GitConstants.GIT_FILE_NAME, filenameToAdd, Status.class);
+        assertTrue(status.getUntracked().contains(filenameToAdd));
+        assertFalse(status.getUntracked().contains(filenameBranchToAdd));
+        
+        status = template.requestBody("direct:status-tracked", "", Status.class);
+        assertTrue(status.getUntracked().isEmpty());
+        
+        repository.close();
+    }
+    
+    @Test
+    public void statusIncrementalTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        Status status = template.requestBody("direct:status-incremental", "", Status.class);
+        assertTrue(status.getUntracked().contains(filenameToAdd));
+        
+        GitStatusScanner scanner = new GitStatusScanner(repository, true);
+        try {
+            status = scanner.status();
+            assertTrue(status.getUntracked().contains(filenameToAdd));
+            assertEquals(1, scanner.getRescans());
+            
+            File fileToAddDifferent = new File(gitLocalRepo, filenameBranchToAdd);
+            fileToAddDifferent.createNewFile();
+            Thread.sleep(1000);
+            
+            status = scanner.status();
+            assertTrue(status.getUntracked().contains(filenameToAdd));
+            assertTrue(status.getUntracked().contains(filenameBranchToAdd));
+            
+            fileToAdd.delete();
+            Thread.sleep(1000);
+            
+            status = scanner.status();
+            assertFalse(status.getUntracked().contains(filenameToAdd));
+            assertTrue(status.getUntracked().contains(filenameBranchToAdd));
+            // the working tree changes were applied without scanning it again
+            assertEquals(1, scanner.getRescans());
+            
+            template.sendBodyAndHeader("direct:add", "", GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            Thread.sleep(1000);
+            
+            status = scanner.status();
+            assertTrue(status.getAdded().contains(filenameBranchToAdd));
+            assertEquals(2, scanner.getRescans());
+        } finally {
+            scanner.close();
+        }
+        repository.close();
+    }
+    
     @Test
     public void logTest() throws Exception {
 
@@ -614,6 +806,91 @@ public class GitProducerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void logCompactTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        // the log is copied lazily, as it is iterated
+        Iterable<GitCommit> log = template.requestBody("direct:log-compact", "", Iterable.class);
+        assertFalse(log instanceof List);
+        List<GitCommit> commits = new ArrayList<GitCommit>();
+        for (GitCommit commit : log) {
+            commits.add(commit);
+        }
+        assertEquals(1, commits.size());
+        assertEquals(commitMessage, commits.get(0).getShortMessage());
+        assertEquals(Collections.singletonList(filenameToAdd), commits.get(0).getChangedPaths());
+        repository.close();
+    }
+    
+    @Test
+    public void logCacheTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        List<RevCommit> first = template.requestBody("direct:log-cached", "", List.class);
+        List<RevCommit> second = template.requestBody("direct:log-cached", "", List.class);
+        assertEquals(1, first.size());
+        assertSame(first, second);
+        
+        File fileToAdd1 = new File(gitLocalRepo, filenameBranchToAdd);
+        fileToAdd1.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessageAll);
+            }
+        });
+        
+        List<RevCommit> third = template.requestBody("direct:log-cached", "", List.class);
+        assertEquals(2, third.size());
+        assertEquals(commitMessageAll, third.get(0).getShortMessage());
+        repository.close();
+    }
+    
     @Test
     public void logBranchTest() throws Exception {
 
@@ -691,6 +968,67 @@ public class GitProducerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void batchRefsTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        ObjectId head = repository.resolve(Constants.HEAD);
+        template.sendBodyAndHeader("direct:create-tag", Arrays.asList("v1", "v2", "v3"), GitConstants.GIT_BATCH, true);
+        Map<String, String> branches = new LinkedHashMap<String, String>();
+        branches.put("batch1", head.name());
+        branches.put("batch2", Constants.HEAD);
+        template.sendBodyAndHeader("direct:create-branch", branches, GitConstants.GIT_BATCH, true);
+        
+        Map<String, Ref> tags = repository.getRefDatabase().getRefs(Constants.R_TAGS);
+        assertEquals(3, tags.size());
+        assertEquals(head, repository.getRefDatabase().peel(tags.get("v2")).getPeeledObjectId());
+        Map<String, Ref> heads = repository.getRefDatabase().getRefs(Constants.R_HEADS);
+        assertEquals(head, heads.get("batch1").getObjectId());
+        assertEquals(head, heads.get("batch2").getObjectId());
+        
+        template.sendBodyAndHeader("direct:delete-tag", Arrays.asList("v1", "refs/tags/v3"), GitConstants.GIT_BATCH, true);
+        template.sendBodyAndHeader("direct:delete-branch", Arrays.asList("batch1", "batch2"), GitConstants.GIT_BATCH, true);
+        
+        try {
+            template.sendBodyAndHeader("direct:create-tag", Collections.emptyList(), GitConstants.GIT_BATCH, true);
+            fail("Should have thrown exception");
+        } catch (CamelExecutionException e) {
+            assertIsInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+        try {
+            template.sendBodyAndHeader("direct:delete-tag", "v2".getBytes(), GitConstants.GIT_BATCH, true);
+            fail("Should have thrown exception");
+        } catch (CamelExecutionException e) {
+            assertIsInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+        
+        // without the batch header the body is ignored and the tag of the endpoint is created
+        template.sendBody("direct:create-tag", "v2".getBytes());
+        assertNotNull(repository.resolve(Constants.R_TAGS + tagTest));
+        
+        assertEquals(new HashSet<String>(Arrays.asList("v2", tagTest)), repository.getRefDatabase().getRefs(Constants.R_TAGS).keySet());
+        assertEquals(Collections.singleton("master"), repository.getRefDatabase().getRefs(Constants.R_HEADS).keySet());
+        repository.close();
+    }
+    
     @Test
     public void createTagTest() throws Exception {
 
@@ -786,6 +1124,420 @@ public class GitProducerTest extends GitTestSupport {
         repository.close();
     }
     
+    @Test
+    public void showTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        Files.write(fileToAdd.toPath(), commitMessage.getBytes());
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        Files.write(fileToAdd.toPath(), commitMessageAll.getBytes());
+        
+        String content = template.requestBodyAndHeader("direct:show", "", GitConstants.GIT_FILE_NAME, filenameToAdd, String.class);
+        assertEquals(commitMessage, content);
+        repository.close();
+    }
+    
+    @Test
+    public void writeTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        final String writtenFile = "dir/written.txt";
+        template.requestBodyAndHeader("direct:write", commitMessage, GitConstants.GIT_FILE_NAME, writtenFile);
+        
+        File file = new File(gitLocalRepo, writtenFile);
+        assertEquals(commitMessage, new String(Files.readAllBytes(file.toPath())));
+        Status status = new Git(repository).status().call();
+        assertTrue(status.getAdded().contains(writtenFile));
+        assertTrue(status.getModified().isEmpty());
+        
+        ObjectId blobId = template.requestBodyAndHeader("direct:write-index-only", new ByteArrayInputStream(commitMessageAll.getBytes()),
+                GitConstants.GIT_FILE_NAME, filenameToAdd, ObjectId.class);
+        
+        assertFalse(new File(gitLocalRepo, filenameToAdd).exists());
+        assertEquals(commitMessageAll, new String(repository.open(blobId).getBytes()));
+        status = new Git(repository).status().call();
+        assertTrue(status.getAdded().contains(filenameToAdd));
+        assertTrue(status.getMissing().contains(filenameToAdd));
+        repository.close();
+    }
+    
+    @Test
+    public void writeOutsideWorkTreeTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File escaped = new File(new File(gitLocalRepo).getAbsoluteFile().getParentFile(), "escaped.txt");
+        for (String fileName : Arrays.asList("../escaped.txt", "dir/../../escaped.txt", ".git/escaped.txt")) {
+            try {
+                template.requestBodyAndHeader("direct:write", commitMessage, GitConstants.GIT_FILE_NAME, fileName);
+                fail("Should have thrown exception");
+            } catch (CamelExecutionException e) {
+                assertIsInstanceOf(IllegalArgumentException.class, e.getCause());
+            }
+            try {
+                template.requestBodyAndHeader("direct:write", new ByteArrayInputStream(commitMessage.getBytes()), GitConstants.GIT_FILE_NAME, fileName);
+                fail("Should have thrown exception");
+            } catch (CamelExecutionException e) {
+                assertIsInstanceOf(IllegalArgumentException.class, e.getCause());
+            }
+        }
+        
+        assertFalse(escaped.exists());
+        assertFalse(new File(gitLocalRepo, ".git/escaped.txt").exists());
+        assertTrue(new Git(repository).status().call().isClean());
+        repository.close();
+    }
+    
+    @Test
+    public void inMemoryTest() throws Exception {
+        template.requestBodyAndHeader("direct:memory-write", commitMessage, GitConstants.GIT_FILE_NAME, filenameToAdd);
+        template.requestBodyAndHeader("direct:memory-write", commitMessageBranch, GitConstants.GIT_FILE_NAME, "dir/" + filenameBranchToAdd);
+        template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+        
+        template.requestBodyAndHeader("direct:memory-remove", "", GitConstants.GIT_FILE_NAME, "dir");
+        template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessageAll);
+        template.sendBody("direct:memory-create-tag", "");
+        
+        Iterable<RevCommit> revCommits = template.requestBody("direct:memory-log", "", Iterable.class);
+        int count = 0;
+        for (RevCommit rev : revCommits) {
+            assertEquals(count == 0 ? commitMessageAll : commitMessage, rev.getShortMessage());
+            count++;
+        }
+        assertEquals(2, count);
+        
+        Repository repository = context.getComponent("git", GitComponent.class).getInMemoryRepository(gitLocalRepo).getRepository();
+        RevWalk walk = new RevWalk(repository);
+        RevCommit head = walk.parseCommit(repository.resolve(Constants.HEAD));
+        assertNotNull(TreeWalk.forPath(repository, filenameToAdd, head.getTree()));
+        assertNull(TreeWalk.forPath(repository, "dir/" + filenameBranchToAdd, head.getTree()));
+        walk.close();
+        assertEquals(head, repository.resolve("refs/tags/" + tagTest + "^{commit}"));
+        assertFalse(new File(gitLocalRepo).exists());
+    }
+    
+    @Test
+    public void inMemoryHeadMovedTest() throws Exception {
+        template.requestBodyAndHeader("direct:memory-write", commitMessage, GitConstants.GIT_FILE_NAME, filenameToAdd);
+        template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+        template.requestBodyAndHeader("direct:memory-write", commitMessageBranch, GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+        
+        // move HEAD between the write and the commit
+        Repository repository = context.getComponent("git", GitComponent.class).getInMemoryRepository(gitLocalRepo).getRepository();
+        RevWalk walk = new RevWalk(repository);
+        RevCommit head = walk.parseCommit(repository.resolve(Constants.HEAD));
+        ObjectInserter inserter = repository.newObjectInserter();
+        CommitBuilder builder = new CommitBuilder();
+        builder.setTreeId(head.getTree());
+        builder.setParentId(head);
+        builder.setAuthor(new PersonIdent("moved", "moved@example.com"));
+        builder.setCommitter(builder.getAuthor());
+        builder.setMessage(commitMessageAll);
+        ObjectId moved = inserter.insert(builder);
+        inserter.flush();
+        inserter.close();
+        RefUpdate update = repository.updateRef(Constants.HEAD);
+        update.setNewObjectId(moved);
+        assertEquals(RefUpdate.Result.FAST_FORWARD, update.update(walk));
+        
+        try {
+            template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessageBranch);
+            fail("Should have thrown an exception");
+        } catch (CamelExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(moved, repository.resolve(Constants.HEAD));
+        
+        // the staging area starts over from the new HEAD
+        template.requestBodyAndHeader("direct:memory-write", commitMessageBranch, GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+        template.requestBodyAndHeader("direct:memory-commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessageBranch);
+        RevCommit committed = walk.parseCommit(repository.resolve(Constants.HEAD));
+        assertEquals(moved, committed.getParent(0));
+        assertNotNull(TreeWalk.forPath(repository, filenameToAdd, committed.getTree()));
+        assertNotNull(TreeWalk.forPath(repository, filenameBranchToAdd, committed.getTree()));
+        walk.close();
+    }
+    
+    @Test
+    public void archiveTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        fileToAdd.createNewFile();
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        InputStream archive = template.requestBodyAndHeader("direct:archive", "", GitConstants.GIT_ARCHIVE_PREFIX, "release/", InputStream.class);
+        ZipInputStream zip = new ZipInputStream(archive);
+        ZipEntry entry = zip.getNextEntry();
+        assertEquals("release/" + filenameToAdd, entry.getName());
+        assertNull(zip.getNextEntry());
+        zip.close();
+        repository.close();
+    }
+    
+    @Test(timeout = 30000)
+    public void archiveNeverReadTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        Git git = new Git(repository);
+        
+        byte[] content = new byte[1024 * 1024];
+        new Random(42).nextBytes(content);
+        Files.write(new File(gitLocalRepo, filenameToAdd).toPath(), content);
+        git.add().addFilepattern(filenameToAdd).call();
+        git.commit().setMessage(commitMessage).call();
+        
+        // the archive is larger than the pipe, so its writer stalls until the body is read
+        InputStream archive = template.requestBodyAndHeader("direct:git-pipe-timeout", "", GitConstants.GIT_OPERATION, "archive", InputStream.class);
+        
+        // init needs the repository the writer holds, which it releases on timeout
+        template.sendBodyAndHeader("direct:git-pipe-timeout", "", GitConstants.GIT_OPERATION, "init");
+        
+        try {
+            IOConverter.toBytes(archive);
+            fail("Should have thrown exception");
+        } catch (IOException e) {
+            assertEquals("The stream could not be written completely", e.getMessage());
+        }
+        archive.close();
+        repository.close();
+    }
+    
+    @Test
+    public void diffTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        Files.write(fileToAdd.toPath(), commitMessage.getBytes());
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        Files.write(fileToAdd.toPath(), commitMessageAll.getBytes());
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessageAll);
+            }
+        });
+        
+        Exchange summary = template.send("direct:diff", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_OLD_REVISION, "HEAD~1");
+                exchange.getIn().setHeader(GitConstants.GIT_DIFF_SUMMARY, true);
+            }
+        });
+        List<DiffEntry> entries = summary.getOut().getBody(List.class);
+        assertEquals(1, entries.size());
+        assertEquals(ChangeType.MODIFY, entries.get(0).getChangeType());
+        assertEquals(filenameToAdd, entries.get(0).getNewPath());
+        
+        Exchange patch = template.send("direct:diff", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_OLD_REVISION, "HEAD~1");
+            }
+        });
+        String content = patch.getOut().getBody(String.class);
+        assertTrue(content.contains("-" + commitMessage));
+        assertTrue(content.contains("+" + commitMessageAll));
+        repository.close();
+    }
+    
+    @Test
+    public void blameTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        Files.write(fileToAdd.toPath(), commitMessage.getBytes());
+        
+        template.send("direct:add", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+            }
+        });
+        
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        BlameResult blame = template.requestBodyAndHeader("direct:blame", "", GitConstants.GIT_FILE_NAME, filenameToAdd, BlameResult.class);
+        assertEquals(1, blame.getResultContents().size());
+        assertEquals(commitMessage, blame.getSourceCommit(0).getShortMessage());
+        
+        BlameResult cached = template.requestBodyAndHeader("direct:blame", "", GitConstants.GIT_FILE_NAME, filenameToAdd, BlameResult.class);
+        assertSame(blame, cached);
+        repository.close();
+    }
+    
+    @Test
+    public void mergeTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        Git git = new Git(repository);
+        
+        File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+        Files.write(fileToAdd.toPath(), "base".getBytes());
+        git.add().addFilepattern(filenameToAdd).call();
+        git.commit().setMessage(commitMessage).call();
+        
+        git.checkout().setCreateBranch(true).setName(branchTest).call();
+        Files.write(new File(gitLocalRepo, "feature.txt").toPath(), "feature".getBytes());
+        git.add().addFilepattern("feature.txt").call();
+        RevCommit feature = git.commit().setMessage("feature").call();
+        git.checkout().setName("master").call();
+        Files.write(new File(gitLocalRepo, "master.txt").toPath(), "master".getBytes());
+        git.add().addFilepattern("master.txt").call();
+        RevCommit master = git.commit().setMessage("master").call();
+        
+        // the working tree is not updated, so the checked out branch is rejected
+        try {
+            template.requestBodyAndHeader("direct:merge", "", GitConstants.GIT_REVISION, branchTest, MergeResult.class);
+            fail("Should have thrown exception");
+        } catch (CamelExecutionException e) {
+            assertIsInstanceOf(IllegalArgumentException.class, e.getCause());
+        }
+        assertEquals(master, repository.resolve(Constants.HEAD));
+        
+        git.checkout().setName(branchTest).call();
+        MergeResult result = template.requestBodyAndHeader("direct:merge-master", "", GitConstants.GIT_REVISION, branchTest, MergeResult.class);
+        assertEquals(MergeStatus.MERGED, result.getMergeStatus());
+        assertEquals(result.getNewHead(), repository.resolve("master"));
+        assertEquals(feature, repository.resolve(Constants.HEAD));
+        RevWalk walk = new RevWalk(repository);
+        RevCommit merge = walk.parseCommit(result.getNewHead());
+        assertEquals(Arrays.asList(master, feature), Arrays.asList(merge.getParents()));
+        assertNotNull(TreeWalk.forPath(repository, "feature.txt", merge.getTree()));
+        assertNotNull(TreeWalk.forPath(repository, "master.txt", merge.getTree()));
+        walk.close();
+        
+        result = template.requestBodyAndHeader("direct:merge-master", "", GitConstants.GIT_REVISION, branchTest, MergeResult.class);
+        assertEquals(MergeStatus.ALREADY_UP_TO_DATE, result.getMergeStatus());
+        
+        git.checkout().setName("master").call();
+        git.checkout().setCreateBranch(true).setName("conflict").call();
+        Files.write(fileToAdd.toPath(), "conflict".getBytes());
+        git.commit().setAll(true).setMessage("conflict").call();
+        git.checkout().setName("master").call();
+        Files.write(fileToAdd.toPath(), "master".getBytes());
+        ObjectId head = git.commit().setAll(true).setMessage("master").call();
+        git.checkout().setName(branchTest).call();
+        
+        result = template.requestBodyAndHeader("direct:merge-master", "", GitConstants.GIT_REVISION, "conflict", MergeResult.class);
+        assertEquals(MergeStatus.CONFLICTING, result.getMergeStatus());
+        assertEquals(Collections.singleton(filenameToAdd), result.getConflicts().keySet());
+        assertEquals(head, repository.resolve("master"));
+        
+        git.checkout().setName("master").call();
+        result = template.requestBodyAndHeader("direct:merge-branch", "", GitConstants.GIT_REVISION, "master", MergeResult.class);
+        assertEquals(MergeStatus.FAST_FORWARD, result.getMergeStatus());
+        assertEquals(head, repository.resolve(branchTest));
+        repository.close();
+    }
+    
+    @Test
+    public void showLargeFileTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        byte[] content = new byte[256 * 1024];
+        new Random(42).nextBytes(content);
+        template.requestBodyAndHeader("direct:write", new ByteArrayInputStream(content), GitConstants.GIT_FILE_NAME, filenameToAdd);
+        template.send("direct:commit", new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            }
+        });
+        
+        GitComponent component = new GitComponent();
+        component.setStreamFileThreshold(64 * 1024);
+        context.addComponent("git-stream", component);
+        component.start();
+        try {
+            Object large = template.requestBodyAndHeader("git-stream://" + gitLocalRepo + "?operation=show", "", GitConstants.GIT_FILE_NAME, filenameToAdd);
+            assertTrue(large instanceof InputStream);
+            InputStream in = (InputStream) large;
+            try {
+                assertTrue(Arrays.equals(content, IOConverter.toBytes(in)));
+            } finally {
+                in.close();
+            }
+            
+            template.requestBodyAndHeader("direct:write", "small", GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            template.requestBodyAndHeader("direct:commit", "", GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+            Object small = template.requestBodyAndHeader("git-stream://" + gitLocalRepo + "?operation=show", "", GitConstants.GIT_FILE_NAME, filenameBranchToAdd);
+            assertTrue(small instanceof byte[]);
+        } finally {
+            // restores the JGit defaults for the other tests of the JVM
+            component.stop();
+        }
+        
+        // the JVM wide threshold is released, so another value can be set
+        GitComponent other = new GitComponent();
+        other.setStreamFileThreshold(128 * 1024);
+        other.start();
+        other.stop();
+        repository.close();
+    }
+    
     @Override
     protected RouteBuilder createRouteBuilder() throws Exception {
         return new RouteBuilder() {            
@@ -793,6 +1545,10 @@ public class GitProducerTest extends GitTestSupport {
             public void configure() throws Exception {
                 from("direct:clone")
                         .to("git://" + gitLocalRepo + "?remotePath=https://github.com/oscerd/json-webserver-example.git&operation=clone");
+                from("direct:git")
+                        .to("git://" + gitLocalRepo + "?warmUp=true");
+                from("direct:git-pipe-timeout")
+                        .to("git://" + gitLocalRepo + "?pipeTimeout=500");
                 from("direct:init")
                         .to("git://" + gitLocalRepo + "?operation=init");
                 from("direct:add")
@@ -819,14 +1575,50 @@ public class GitProducerTest extends GitTestSupport {
                         .to("git://" + gitLocalRepo + "?operation=status");
                 from("direct:status-branch")
                         .to("git://" + gitLocalRepo + "?operation=status&branchName=" + branchTest);
+                from("direct:status-tracked")
+                        .to("git://" + gitLocalRepo + "?operation=status&statusUntracked=false");
+                from("direct:status-incremental")
+                        .to("git://" + gitLocalRepo + "?operation=status&statusIncremental=true");
                 from("direct:log")
                         .to("git://" + gitLocalRepo + "?operation=log");
+                from("direct:log-compact")
+                        .to("git://" + gitLocalRepo + "?operation=log&compactCommits=true&compactCommitPaths=true");
+                from("direct:log-cached")
+                        .to("git://" + gitLocalRepo + "?operation=log&logCacheSize=10");
                 from("direct:log-branch")
                         .to("git://" + gitLocalRepo + "?operation=log&branchName=" + branchTest);
                 from("direct:create-tag")
                         .to("git://" + gitLocalRepo + "?operation=createTag&tagName=" + tagTest);
                 from("direct:delete-tag")
                         .to("git://" + gitLocalRepo + "?operation=deleteTag&tagName=" + tagTest);
+                from("direct:show")
+                        .to("git://" + gitLocalRepo + "?operation=show");
+                from("direct:write")
+                        .to("git://" + gitLocalRepo + "?operation=write");
+                from("direct:write-index-only")
+                        .to("git://" + gitLocalRepo + "?operation=write&writeWorkTree=false");
+                from("direct:memory-write")
+                        .to("git://" + gitLocalRepo + "?operation=write&inMemory=true");
+                from("direct:memory-remove")
+                        .to("git://" + gitLocalRepo + "?operation=remove&inMemory=true");
+                from("direct:memory-commit")
+                        .to("git://" + gitLocalRepo + "?operation=commit&inMemory=true");
+                from("direct:memory-log")
+                        .to("git://" + gitLocalRepo + "?operation=log&inMemory=true");
+                from("direct:memory-create-tag")
+                        .to("git://" + gitLocalRepo + "?operation=createTag&inMemory=true&tagName=" + tagTest);
+                from("direct:merge")
+                        .to("git://" + gitLocalRepo + "?operation=merge");
+                from("direct:merge-master")
+                        .to("git://" + gitLocalRepo + "?operation=merge&branchName=master");
+                from("direct:merge-branch")
+                        .to("git://" + gitLocalRepo + "?operation=merge&branchName=" + branchTest);
+                from("direct:archive")
+                        .to("git://" + gitLocalRepo + "?operation=archive");
+                from("direct:diff")
+                        .to("git://" + gitLocalRepo + "?operation=diff");
+                from("direct:blame")
+                        .to("git://" + gitLocalRepo + "?operation=blame");
             } 
         };
     }
@@ -17,7 +17,18 @@
 package org.apache.camel.component.git.producer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.camel.CamelExecutionException;
 import org.apache.camel.Exchange;
 import org.apache.camel.Processor;
 import org.apache.camel.builder.RouteBuilder;
@@ -25,7 +36,11 @@ import org.apache.camel.component.git.GitConstants;
 import org.apache.camel.component.git.GitTestSupport;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.FetchResult;
 import org.eclipse.jgit.transport.PushResult;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -65,6 +80,191 @@ public class GitRemoteProducerTest extends GitTestSupport {
         repository.close();
     }
    
+    @Test
+    public void pushCoalesceTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        final File remoteRepo = new File("testRemoteRepo");
+        Git remote = Git.init().setDirectory(remoteRepo).setBare(true).call();
+        try {
+            File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+            fileToAdd.createNewFile();
+            
+            template.send("direct:add", new Processor() {
+                @Override
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+                }
+            });
+            
+            template.send("direct:commit", new Processor() {
+                @Override
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+                }
+            });
+            
+            context.addRoutes(new RouteBuilder() {
+                @Override
+                public void configure() throws Exception {
+                    from("direct:push-coalesce")
+                            .to("git://" + gitLocalRepo + "?operation=push&pushCoalesceWindow=1000&remotePath=" + remoteRepo.getAbsolutePath());
+                }
+            });
+            
+            Future<Iterable> first = template.asyncRequestBody("direct:push-coalesce", "", Iterable.class);
+            Future<Iterable> second = template.asyncRequestBody("direct:push-coalesce", "", Iterable.class);
+            
+            assertSame(first.get(), second.get());
+            assertEquals(repository.resolve(Constants.HEAD), remote.getRepository().resolve("refs/heads/master"));
+        } finally {
+            remote.close();
+            deleteDirectory(remoteRepo);
+        }
+        repository.close();
+    }
+   
+    @Test
+    public void pushCoalesceSerializedTest() throws Exception {
+        final GitPushCoalescer coalescer = new GitPushCoalescer(100);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Callable<Iterable<PushResult>> push = new Callable<Iterable<PushResult>>() {
+            @Override
+            public Iterable<PushResult> call() throws Exception {
+                maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                Thread.sleep(500);
+                running.decrementAndGet();
+                return new ArrayList<PushResult>();
+            }
+        };
+        Callable<Iterable<PushResult>> request = new Callable<Iterable<PushResult>>() {
+            @Override
+            public Iterable<PushResult> call() throws Exception {
+                return coalescer.push("origin", push);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Iterable<PushResult>> first = executor.submit(request);
+            // the first push is running when the second request arrives
+            Thread.sleep(300);
+            Future<Iterable<PushResult>> second = executor.submit(request);
+            assertNotSame(first.get(), second.get());
+            assertEquals(1, maxRunning.get());
+            // the lock of the key is released with its last push
+            assertEquals(0, coalescer.getLockCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+   
+    @Test
+    public void pushRefSpecsTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        final File remoteRepo = new File("testRemoteRepo");
+        Git remote = Git.init().setDirectory(remoteRepo).setBare(true).call();
+        try {
+            StoredConfig config = repository.getConfig();
+            config.setString("remote", "origin", "url", remoteRepo.getAbsolutePath());
+            config.setString("remote", "origin", "fetch", "+refs/heads/*:refs/remotes/origin/*");
+            config.save();
+            
+            File fileToAdd = new File(gitLocalRepo, filenameToAdd);
+            fileToAdd.createNewFile();
+            
+            template.send("direct:add", new Processor() {
+                @Override
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(GitConstants.GIT_FILE_NAME, filenameToAdd);
+                }
+            });
+            
+            template.send("direct:commit", new Processor() {
+                @Override
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(GitConstants.GIT_COMMIT_MESSAGE, commitMessage);
+                }
+            });
+            
+            Git git = new Git(repository);
+            git.branchCreate().setName(branchTest).call();
+            git.tag().setName(tagTest).call();
+            
+            final List<String> refSpecs = Arrays.asList("refs/heads/master", "refs/heads/" + branchTest);
+            Iterable<PushResult> result = template.request("direct:push-origin", new Processor() {
+                @Override
+                public void process(Exchange exchange) throws Exception {
+                    exchange.getIn().setHeader(GitConstants.GIT_PUSH_REF_SPECS, refSpecs);
+                    exchange.getIn().setHeader(GitConstants.GIT_PUSH_TAGS, true);
+                }
+            }).getOut().getBody(Iterable.class);
+            
+            assertTrue(result.iterator().hasNext());
+            ObjectId head = repository.resolve(Constants.HEAD);
+            assertEquals(head, remote.getRepository().resolve("refs/heads/master"));
+            assertEquals(head, remote.getRepository().resolve("refs/heads/" + branchTest));
+            assertNotNull(remote.getRepository().resolve("refs/tags/" + tagTest));
+            
+            result = template.requestBodyAndHeader("direct:push-origin", "", GitConstants.GIT_PUSH_REF_SPECS, refSpecs, Iterable.class);
+            assertFalse(result.iterator().hasNext());
+        } finally {
+            remote.close();
+            deleteDirectory(remoteRepo);
+        }
+        repository.close();
+    }
+
+    @Test
+    public void fetchRemotesTest() throws Exception {
+
+        Repository repository = getTestRepository();
+        
+        List<String> remotes = Arrays.asList("first", "second");
+        Map<String, ObjectId> heads = new HashMap<String, ObjectId>();
+        StoredConfig config = repository.getConfig();
+        try {
+            for (String name : remotes) {
+                File remoteRepo = new File("testRemoteRepo-" + name);
+                Git remote = Git.init().setDirectory(remoteRepo).call();
+                try {
+                    new File(remoteRepo, filenameToAdd).createNewFile();
+                    remote.add().addFilepattern(filenameToAdd).call();
+                    heads.put(name, remote.commit().setMessage(name).call());
+                } finally {
+                    remote.close();
+                }
+                config.setString("remote", name, "url", remoteRepo.getAbsolutePath());
+                config.setString("remote", name, "fetch", "+refs/heads/*:refs/remotes/" + name + "/*");
+            }
+            config.save();
+            
+            Map<?, ?> result = template.requestBody("direct:fetch", "", Map.class);
+            assertEquals(remotes, new ArrayList<Object>(result.keySet()));
+            for (String name : remotes) {
+                assertTrue(result.get(name) instanceof FetchResult);
+                assertEquals(heads.get(name), repository.resolve("refs/remotes/" + name + "/master"));
+            }
+            
+            try {
+                template.requestBodyAndHeader("direct:fetch", "", GitConstants.GIT_REMOTES, "first,missing");
+                fail("Should have thrown exception");
+            } catch (CamelExecutionException e) {
+                assertIsInstanceOf(IllegalStateException.class, e.getCause());
+                assertTrue(e.getCause().getMessage().contains("[missing]"));
+                assertNotNull(e.getCause().getCause());
+            }
+        } finally {
+            for (String name : remotes) {
+                deleteDirectory(new File("testRemoteRepo-" + name));
+            }
+        }
+        repository.close();
+    }
+   
     @Override
     protected RouteBuilder createRouteBuilder() throws Exception {
         return new RouteBuilder() {            
@@ -74,6 +274,10 @@ public class GitRemoteProducerTest extends GitTestSupport {
                         .to("git://" + gitLocalRepo + "?operation=add");
                 from("direct:commit")
                         .to("git://" + gitLocalRepo + "?operation=commit");
+                from("direct:push-origin")
+                        .to("git://" + gitLocalRepo + "?operation=push&remotePath=origin");
+                from("direct:fetch")
+                        .to("git://" + gitLocalRepo + "?operation=fetch&remotePath=first,second&fetchParallelism=2");
                 from("direct:push")
                         .to("git://" + gitLocalRepo + "?operation=push&remotePath=remoteURL&username=xxx&password=xxx");
             } 